@@ -0,0 +1,133 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+/**
+ * <p>
+ * walks one BK tree for one search and implements the search of all BK
+ * tree variants. A subclass only provides access to the nodes: it keeps
+ * the stack of nodes still to visit, starting with the root, and exposes
+ * the value and the child slots of the node popped last. The child slots
+ * are sorted by their distance to the node.
+ * </p>
+ * <p>
+ * Nodes are not handed out as objects, such that trees which number their
+ * nodes can keep them in an {@link IntStack} without boxing.
+ * </p>
+ */
+abstract class BKCursor<V> {
+  /* +***************************************************************** */
+  /**
+   * pops the next node to visit and makes it the current node, returns
+   * {@code false} if none is left
+   */
+  abstract boolean next();
+  /** returns the value of the current node */
+  abstract V value();
+  /** returns the number of child slots of the current node */
+  abstract int slots();
+  /** returns the distance of the child in {@code slot} to the current node */
+  abstract int distAt(int slot);
+  /**
+   * pushes the child in {@code slot} to visit later, returns {@code false}
+   * if the slot is empty
+   */
+  abstract boolean push(int slot);
+  /* +***************************************************************** */
+  /** returns the first slot with a distance of at least {@code d} */
+  int slotOf(int d) {
+    int lo = 0;
+    int hi = slots();
+    while( lo<hi ) {
+      int mid = (lo+hi)>>>1;
+      if( distAt(mid)<d ) {
+        lo = mid+1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+  /* +***************************************************************** */
+  /** returns an upper bound of the largest distance of a child */
+  int maxDist() {
+    int n = slots();
+    return n==0 ? 0 : distAt(n-1);
+  }
+  /* +***************************************************************** */
+  /**
+   * reports matches to sink and returns the limit reached, which is never
+   * larger than maxDist
+   */
+  final int lookup(V queryValue, QueryScorer<V> scorer, int maxDist,
+                   boolean distinct, LookupBudget budget,
+                   ResultSink<? super V> sink)
+  {
+    int limit = maxDist;
+    while( next() && (budget==null || budget.spend()) ) {
+      V value = value();
+      // beyond this distance, neither the value nor any child is of interest
+      int maxUseful = (int)Math.min((long)limit+maxDist(),
+                                    Integer.MAX_VALUE);
+      int d = scorer.d(value, maxUseful);
+      if( d<=limit && !(distinct && queryValue.equals(value)) ) {
+        limit = Math.min(limit, sink.found(value, d));
+      }
+      if( limit<0 ) {
+        break;
+      }
+      // push in reverse to visit children in ascending distance
+      int from = slotOf(d-limit);
+      int to = slotOf((int)Math.min((long)d+limit+1, Integer.MAX_VALUE));
+      for(int i = to-1; i>=from; i--) {
+        push(i);
+      }
+    }
+    return limit;
+  }
+  /* +***************************************************************** */
+  /**
+   * offers the values that may be closer to the query than
+   * {@link KNearest#bound heap.bound()} to {@code heap}
+   */
+  final void nearest(QueryScorer<V> scorer, KNearest<V> heap) {
+    // lower bounds of the distance to the query of the nodes pushed
+    IntStack lower = new IntStack();
+    lower.push(0);
+    while( next() ) {
+      if( lower.pop()>heap.radius() ) {
+        continue;
+      }
+      V value = value();
+      int maxUseful = (int)Math.min((long)heap.radius()+maxDist(),
+                                    Integer.MAX_VALUE);
+      int d = scorer.d(value, maxUseful);
+      heap.offer(value, d);
+
+      // push the children within the radius, the closest last
+      int r = heap.radius();
+      int lo = slotOf(d-r);
+      int hi = slotOf((int)Math.min((long)d+r+1, Integer.MAX_VALUE))-1;
+      while( lo<=hi ) {
+        int dlo = Math.abs(distAt(lo)-d);
+        int dhi = Math.abs(distAt(hi)-d);
+        int slot = dlo>=dhi ? lo++ : hi--;
+        if( push(slot) ) {
+          lower.push(Math.max(dlo, dhi));
+        }
+      }
+    }
+  }
+  /* +***************************************************************** */
+}
@@ -7,31 +7,69 @@ import approdictio.dict.BKTree.LinkTable;
 class BKNode<V> {
   private final V value;
 
-  private final LinkTable<V> links;
+  private LinkTable<V> links;
 
   public BKNode(V value) {
     this.value = value;
-    this.links = new BKTree.ArrayLinkTable<V>();
+    this.links = new BKTree.SparseLinkTable<V>();
   }
   public V getValue() {
     return value;
   }
+  /**
+   * <p>
+   * sets the child at distance {@code d}. Children start out in a
+   * {@link BKTree.SparseLinkTable}, which is replaced by an
+   * {@link BKTree.ArrayLinkTable} once that is more compact.
+   * </p>
+   */
   public void set(int d, BKNode<V> node) {
     links.set(d, node);
+    if( links instanceof BKTree.SparseLinkTable
+        && ((BKTree.SparseLinkTable<V>)links).denserAsArray() ) {
+      links = new BKTree.ArrayLinkTable<V>(links);
+    }
   }
   public BKNode<V> get(int d) {
     return links.get(d);
   }
+  /**
+   * <p>
+   * writes this node and all nodes below it to {@code out}, one per line,
+   * indented by their depth below this node. The tree is traversed
+   * iteratively, such that deep trees do not overflow the call stack.
+   * </p>
+   */
   public void dump(Appendable out, int d, String indent) {
     Formatter f = new Formatter(out);
-    f.format("%s%d: %s%n", indent, d, value);
-    int l = links.size();
-    for(int i = 0; i < l; i++) {
-      BKNode<V> node = links.get(i);
-      if( node != null ) {
-        node.dump(out, i, "  " + indent);
+    BKTree.NodeStack<BKNode<V>> nodes =
+        new BKTree.NodeStack<BKNode<V>>();
+    IntStack dists = new IntStack();
+    IntStack depths = new IntStack();
+    StringBuilder pad = new StringBuilder(indent);
+    nodes.push(this);
+    dists.push(d);
+    depths.push(0);
+    while( !nodes.isEmpty() ) {
+      BKNode<V> node = nodes.pop();
+      int nodeDist = dists.pop();
+      int depth = depths.pop();
+      pad.setLength(indent.length());
+      for(int i = 0; i < depth; i++) {
+        pad.append("  ");
+      }
+      f.format("%s%d: %s%n", pad, nodeDist, node.value);
+      LinkTable<V> links = node.links;
+      for(int i = links.size()-1; i >= 0; i--) {
+        BKNode<V> child = links.childAt(i);
+        if( child != null ) {
+          nodes.push(child);
+          dists.push(links.distAt(i));
+          depths.push(depth+1);
+        }
       }
     }
+    f.flush();
   }
   public LinkTable<V> getChildren() {
     return links;
@@ -26,11 +26,10 @@ import approdictio.dict.BKTree.LinkTable;
  */
 public final class BKStableLookup<W> implements Iterator<W> {
   private final int maxDist;
-  private final W queryValue;
   private final Comparator<W> order;
-  private final IntMetric<W> metric;
+  private final QueryScorer<W> scorer;
   private W prepared = null;
-  private long computeMaxMillis= Long.MAX_VALUE;
+  private LookupBudget budget = null;
       
   /**
    * creates an iterator to extract values from the given {@link BKTree} that
@@ -52,14 +51,13 @@ public final class BKStableLookup<W> implements Iterator<W> {
                         W queryValue, 
                         int maxDist,
                         Comparator<W> order) {
-    this.queryValue = queryValue;
     this.order = order;
     this.maxDist = maxDist;
     BKNode<W> root = bkTree.getRoot();
     if( root!=null) {
       toInspect.add(root);
     }
-    this.metric = bkTree.getMetric();
+    this.scorer = bkTree.getMetric().prepare(queryValue);
   }
   /*+**********************************************************************/
   /**
@@ -70,6 +68,11 @@ public final class BKStableLookup<W> implements Iterator<W> {
    * however, that one more call to {@code next} succeeds.
    * 
    * <p>
+   * The clock is read only every {@value LookupBudget#CLOCK_INTERVAL}
+   * nodes visited. This replaces a budget set with {@link #setBudget
+   * setBudget()}.</p>
+   * 
+   * <p>
    * Once the time ran out, this method may not be called again to reset the
    * time, since the internal iteration state is then undefined.</p>
    * 
@@ -78,11 +81,28 @@ public final class BKStableLookup<W> implements Iterator<W> {
    *           {@code hasNext} call.
    */
   public void setComputeTimeoutMillis(long deltaFromNow){
-    if (computeMaxMillis<=0) {
+    long nanos = deltaFromNow>=Long.MAX_VALUE/1000000 ? Long.MAX_VALUE
+        : deltaFromNow*1000000;
+    setBudget(LookupBudget.ofNanos(nanos));
+  }
+  /*+**********************************************************************/
+  /**
+   * restrict the work for all {@link #next} calls to the given budget, where
+   * each node of the tree visited is one work unit. After the budget is
+   * exhausted, {@link #hasNext} will return false, with the same guarantees
+   * as described for {@link #setComputeTimeoutMillis
+   * setComputeTimeoutMillis()}, which this replaces.
+   *
+   * @throws IllegalStateException
+   *           if called after the current budget ran out during a
+   *           {@code next} or {@code hasNext} call.
+   */
+  public void setBudget(LookupBudget budget) {
+    if (this.budget!=null && this.budget.isExhausted()) {
       throw new IllegalStateException("reset of timeout after it triggered "
           + "not possible");
     }
-    computeMaxMillis = System.currentTimeMillis()+deltaFromNow;
+    this.budget = budget;
   }
   /*+**********************************************************************/
   private final Comparator<BKNode<W>> 
@@ -116,12 +136,16 @@ public final class BKStableLookup<W> implements Iterator<W> {
       return prepared;
     }
     
-    while (computeTimeLeft() && !toInspect.isEmpty()) {
+    while (!toInspect.isEmpty() && (budget==null || budget.spend())) {
       BKNode<W> node = toInspect.poll();
       prepared = node.getValue();
-      queueChildren(node);
-      //System.out.println("checking "+prepared);
-      int d = metric.d(prepared, queryValue);
+      LinkTable<W> children = node.getChildren();
+      // the distance is needed exactly up to maxDist beyond the farthest
+      // child to know which children can still contain matches
+      int maxUseful = (int)Math.min((long)maxDist+children.maxDist(),
+                                    Integer.MAX_VALUE);
+      int d = scorer.d(prepared, maxUseful);
+      queueChildren(children, d);
       if (d<=maxDist) {
         return prepared;
       }
@@ -129,20 +153,19 @@ public final class BKStableLookup<W> implements Iterator<W> {
     return null;
   }
   
-  private boolean computeTimeLeft() {
-    if (System.currentTimeMillis()>=computeMaxMillis) {
-      computeMaxMillis = 0;
-      return false;
-    }
-    return true;
-  }
-  
-  private void 
-  queueChildren(BKNode<W> node) {
-    LinkTable<W> children = node.getChildren();
-    int l = children.size();
-    for(int i=0; i<l; i++) {
-      BKNode<W> child = children.get(i);
+  /**
+   * queues the children with an edge distance in {@code [d-maxDist,
+   * d+maxDist]}, where {@code d} is the distance of their parent to the
+   * query. By the triangle inequality, no other subtree contains a match.
+   * Since the tree was filled in order, children never come before their
+   * parent, so pruning does not change the order of the matches returned.
+   */
+  private void queueChildren(LinkTable<W> children, int d) {
+    int from = children.slotOf(d-maxDist);
+    int to = children.slotOf((int)Math.min((long)d+maxDist+1,
+                                           Integer.MAX_VALUE));
+    for(int i=from; i<to; i++) {
+      BKNode<W> child = children.childAt(i);
       if (child!=null) {
         toInspect.add(child);
       }
@@ -14,7 +14,11 @@
 package approdictio.dict;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * <p>
@@ -45,7 +49,7 @@ import java.util.List;
  *      BK-Trees</a>
  */
 
-public class BKTree<V> implements Dictionary<V, Integer> {
+public class BKTree<V> implements BudgetedDictionary<V> {
   private BKNode<V> root;
 
   private final IntMetric<V> metric;
@@ -70,17 +74,47 @@ public class BKTree<V> implements Dictionary<V, Integer> {
     return root;
   }
   // +********************************************************************
+  /**
+   * <p>
+   * holds the children of a node by their distance to the node. Besides
+   * access by distance, the children can be scanned by <em>slot</em> in
+   * ascending order of distance. A slot may be empty, in which case
+   * {@link #childAt} returns {@code null}.
+   * </p>
+   */
   interface LinkTable<T> {
     BKNode<T> get(int d);
     BKNode<T> set(int d, BKNode<T> node);
+    /** number of slots */
     int size();
+    BKNode<T> childAt(int slot);
+    int distAt(int slot);
+    /** first slot with a distance of at least {@code d} */
+    int slotOf(int d);
+    /** an upper bound of the largest distance of a child */
+    int maxDist();
   }
 
   // +********************************************************************
+  /**
+   * <p>
+   * stores the children in an array indexed by distance. The slot of a
+   * child is its distance.
+   * </p>
+   */
   static class ArrayLinkTable<T> implements LinkTable<T> {
     @SuppressWarnings("unchecked")
     private BKNode<T>[] a = new BKNode[0];
 
+    ArrayLinkTable() {
+    }
+    @SuppressWarnings("unchecked")
+    ArrayLinkTable(LinkTable<T> other) {
+      a = new BKNode[other.maxDist() + REASONABLE_SIZE_EXTEND];
+      for(int i = 0, l = other.size(); i < l; i++) {
+        a[other.distAt(i)] = other.childAt(i);
+      }
+    }
     public int size() {
       return a.length;
     }
@@ -91,6 +125,18 @@ public class BKTree<V> implements Dictionary<V, Integer> {
         return a[d];
       }
     }
+    public BKNode<T> childAt(int slot) {
+      return a[slot];
+    }
+    public int distAt(int slot) {
+      return slot;
+    }
+    public int slotOf(int d) {
+      return Math.min(Math.max(d, 0), a.length);
+    }
+    public int maxDist() {
+      return Math.max(a.length-1, 0);
+    }
 
     private static final int REASONABLE_SIZE_EXTEND = 3;
     public BKNode<T> set(int d, BKNode<T> node) {
@@ -107,19 +153,79 @@ public class BKTree<V> implements Dictionary<V, Integer> {
   }
 
   // +********************************************************************
-  private void add(BKNode<V> node, V token) {
-    int d = metric.d(node.getValue(), token);
-    if( d==0 ) {
-      return;
+  /**
+   * <p>
+   * stores only the children present as (distance, child) pairs sorted by
+   * distance. Most nodes of a tree have few children spread over a range
+   * of distances, for which this is much more compact than an
+   * {@link ArrayLinkTable}.
+   * </p>
+   */
+  static class SparseLinkTable<T> implements LinkTable<T> {
+    // shared by all leaves, which are most of the nodes
+    private static final int[] NO_DISTS = new int[0];
+    private static final BKNode<?>[] NO_CHILDREN = new BKNode<?>[0];
+    private int[] dists = NO_DISTS;
+    @SuppressWarnings("unchecked")
+    private BKNode<T>[] children = (BKNode<T>[])NO_CHILDREN;
+    private int count = 0;
+
+    public int size() {
+      return count;
+    }
+    public BKNode<T> get(int d) {
+      int i = Arrays.binarySearch(dists, 0, count, d);
+      return i<0 ? null : children[i];
+    }
+    public BKNode<T> childAt(int slot) {
+      return children[slot];
+    }
+    public int distAt(int slot) {
+      return dists[slot];
     }
-    
-    BKNode<V> child = node.get(d);
-    if( child == null ) {
-      node.set(d, new BKNode<V>(token));
-    } else {
-      add(child, token);
+    public int slotOf(int d) {
+      int i = Arrays.binarySearch(dists, 0, count, d);
+      return i<0 ? -i-1 : i;
+    }
+    public int maxDist() {
+      return count==0 ? 0 : dists[count-1];
+    }
+    public BKNode<T> set(int d, BKNode<T> node) {
+      int i = Arrays.binarySearch(dists, 0, count, d);
+      if( i>=0 ) {
+        BKNode<T> old = children[i];
+        children[i] = node;
+        return old;
+      }
+      i = -i-1;
+      if( count==dists.length ) {
+        int l = count+Math.max(count/2, 1);
+        dists = Arrays.copyOf(dists, l);
+        children = Arrays.copyOf(children, l);
+      }
+      System.arraycopy(dists, i, dists, i+1, count-i);
+      System.arraycopy(children, i, children, i+1, count-i);
+      dists[i] = d;
+      children[i] = node;
+      count += 1;
+      return null;
+    }
+    /**
+     * <p>
+     * tells whether an {@link ArrayLinkTable} would need less memory. A
+     * pair takes an int and a reference, an array slot only a reference.
+     * </p>
+     * <p>
+     * A node switching to an array earlier, e.g. once it has a handful of
+     * children, did not measurably speed up lookups on a tree of 200k
+     * random words, so memory alone decides.
+     * </p>
+     */
+    boolean denserAsArray() {
+      return 2*count > maxDist()+1;
     }
   }
+
   // +********************************************************************
   /**
    * <p>
@@ -133,6 +239,16 @@ public class BKTree<V> implements Dictionary<V, Integer> {
     root.dump(out, -1, "");
   }
   // +********************************************************************
+  /**
+   * <p>
+   * creates an immutable, compact copy of this tree which finds the same
+   * values. Values added to this tree later are not seen by the copy.
+   * </p>
+   */
+  public FrozenBKTree<V> freeze() {
+    return new FrozenBKTree<V>(metric, root);
+  }
+  // +********************************************************************
   /**
    * <p>
    * adds the value to the tree. If the {@code value} has a distance of zero
@@ -145,35 +261,298 @@ public class BKTree<V> implements Dictionary<V, Integer> {
       root = new BKNode<V>(value);
       return;
     }
-    add(root, value);
+    insert(metric, root, value);
   }
   // +********************************************************************
-  private int lookup(BKNode<V> node, List<ResultElem<V,Integer>> result,
-                     V queryValue, int maxDist, boolean distinct)
-  {
-    int bestDist = Integer.MAX_VALUE;
-    V value = node.getValue();
-    int d = metric.d(value, queryValue);
-    if( d<=maxDist && !(distinct && queryValue.equals(value)) ) {
-      result.add(new ResultElem<V,Integer>(value, d));
-      if( d<bestDist ) {
-        bestDist = d;
+  private static <V> void insert(IntMetric<V> metric, BKNode<V> node,
+                                 V value) {
+    while( true ) {
+      int d = metric.d(node.getValue(), value);
+      if( d==0 ) {
+        return;
       }
+      BKNode<V> child = node.get(d);
+      if( child == null ) {
+        node.set(d, new BKNode<V>(value));
+        return;
+      }
+      node = child;
     }
-    int from = Math.max(d-maxDist, 0);
-    int to = d+maxDist;
-    for(int i = from; i<=to; i++) {
-      BKNode<V> child = node.get(i);
-      if( child==null ) {
-        continue;
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * adds all values in the order of the collection's iterator with the
+   * {@link ForkJoinPool#commonPool common pool}, see
+   * {@link #addAll(Collection,ForkJoinPool)}.
+   * </p>
+   */
+  public void addAll(Collection<? extends V> values) {
+    addAll(values, ForkJoinPool.commonPool());
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * adds all values in the order of the collection's iterator, using the
+   * threads of {@code pool}. The resulting tree is the same as if the
+   * values were {@link #add add}ed one by one, but the work is spread
+   * over the threads: once the distances of all values to a node are
+   * known, the values are split into buckets by distance and the subtree
+   * of each bucket is built by a separate task. The metric must be thread
+   * safe, which {@code LevenshteinMetric} is.
+   * </p>
+   * <p>
+   * The tree must not be used otherwise while this method runs.
+   * </p>
+   */
+  public void addAll(Collection<? extends V> values, ForkJoinPool pool) {
+    Object[] todo = values.toArray();
+    if( todo.length==0 ) {
+      return;
+    }
+    int from = 0;
+    if( root == null ) {
+      @SuppressWarnings("unchecked")
+      V first = (V)todo[0];
+      root = new BKNode<V>(first);
+      from = 1;
+    }
+    pool.invoke(new BuildTask<V>(metric, root, todo, from));
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * inserts {@code values[from...]} below a node. Small inputs are
+   * inserted one by one. Otherwise the distances to the node are computed
+   * in parallel and the values are split into buckets by distance. All
+   * buckets but the largest are forked as new tasks, the largest is
+   * processed by this task in the next round. Since forked buckets hold at
+   * most half of the values, tasks nest no deeper than log(n).
+   * </p>
+   */
+  private static final class BuildTask<V> extends RecursiveAction {
+    private static final int SEQUENTIAL = 1024;
+
+    private final IntMetric<V> metric;
+    private final BKNode<V> start;
+    private final Object[] startValues;
+    private final int startFrom;
+
+    BuildTask(IntMetric<V> metric, BKNode<V> node, Object[] values,
+              int from) {
+      this.metric = metric;
+      this.start = node;
+      this.startValues = values;
+      this.startFrom = from;
+    }
+    @Override
+    protected void compute() {
+      List<BuildTask<V>> forked = new ArrayList<BuildTask<V>>();
+      BKNode<V> node = start;
+      Object[] values = startValues;
+      int from = startFrom;
+      while( values.length-from>SEQUENTIAL ) {
+        int[] dists = new int[values.length];
+        new DistTask<V>(metric, node.getValue(), values, dists,
+                        from, values.length).invoke();
+
+        int maxD = 0;
+        for(int i = from; i<values.length; i++) {
+          maxD = Math.max(maxD, dists[i]);
+        }
+        int[] counts = new int[maxD+1];
+        for(int i = from; i<values.length; i++) {
+          counts[dists[i]] += 1;
+        }
+        // values at distance zero are equal to the node and dropped
+        Object[][] buckets = new Object[maxD+1][];
+        int largest = 0;
+        for(int d = 1; d<=maxD; d++) {
+          if( counts[d]>0 ) {
+            buckets[d] = new Object[counts[d]];
+            counts[d] = 0;
+            if( largest==0 || buckets[d].length>buckets[largest].length ) {
+              largest = d;
+            }
+          }
+        }
+        for(int i = from; i<values.length; i++) {
+          int d = dists[i];
+          if( d>0 ) {
+            buckets[d][counts[d]++] = values[i];
+          }
+        }
+        if( largest==0 ) {
+          break;
+        }
+
+        BKNode<V> next = null;
+        for(int d = 1; d<=maxD; d++) {
+          Object[] bucket = buckets[d];
+          if( bucket==null ) {
+            continue;
+          }
+          int bucketFrom = 0;
+          BKNode<V> child = node.get(d);
+          if( child==null ) {
+            @SuppressWarnings("unchecked")
+            V first = (V)bucket[0];
+            child = new BKNode<V>(first);
+            node.set(d, child);
+            bucketFrom = 1;
+          }
+          if( d==largest ) {
+            next = child;
+            from = bucketFrom;
+          } else if( bucketFrom<bucket.length ) {
+            BuildTask<V> task = new BuildTask<V>(metric, child, bucket,
+                                                 bucketFrom);
+            task.fork();
+            forked.add(task);
+          }
+        }
+        node = next;
+        values = buckets[largest];
       }
-      int childrenBestDist =
-          lookup(child, result, queryValue, maxDist, distinct);
-      if( childrenBestDist<bestDist ) {
-        bestDist = childrenBestDist;
+      for(int i = from; i<values.length; i++) {
+        @SuppressWarnings("unchecked")
+        V value = (V)values[i];
+        insert(metric, node, value);
+      }
+      for(BuildTask<V> task : forked) {
+        task.join();
       }
     }
-    return bestDist;
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * computes the distances of {@code values[from..to)} to a pivot by
+   * recursive splitting.
+   * </p>
+   */
+  private static final class DistTask<V> extends RecursiveAction {
+    private static final int CHUNK = 2048;
+
+    private final IntMetric<V> metric;
+    private final V pivot;
+    private final Object[] values;
+    private final int[] dists;
+    private final int from;
+    private final int to;
+
+    DistTask(IntMetric<V> metric, V pivot, Object[] values, int[] dists,
+             int from, int to) {
+      this.metric = metric;
+      this.pivot = pivot;
+      this.values = values;
+      this.dists = dists;
+      this.from = from;
+      this.to = to;
+    }
+    @Override
+    protected void compute() {
+      if( to-from<=CHUNK ) {
+        for(int i = from; i<to; i++) {
+          @SuppressWarnings("unchecked")
+          V value = (V)values[i];
+          dists[i] = metric.d(pivot, value);
+        }
+        return;
+      }
+      int mid = (from+to)>>>1;
+      invokeAll(new DistTask<V>(metric, pivot, values, dists, from, mid),
+                new DistTask<V>(metric, pivot, values, dists, mid, to));
+    }
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * is the explicit stack of nodes still to visit during a lookup. The
+   * traversal is iterative, such that degenerated trees, for example from
+   * sorted input, cannot overflow the call stack. It is also used for the
+   * nodes of a {@link ConcurrentBKTree}.
+   * </p>
+   */
+  static final class NodeStack<N> {
+    private static final int INITIAL_SIZE = 64;
+    private Object[] nodes = new Object[INITIAL_SIZE];
+    private int size = 0;
+
+    boolean isEmpty() {
+      return size==0;
+    }
+    void push(N node) {
+      if( size==nodes.length ) {
+        Object[] tmp = new Object[2*size];
+        System.arraycopy(nodes, 0, tmp, 0, size);
+        nodes = tmp;
+      }
+      nodes[size++] = node;
+    }
+    @SuppressWarnings("unchecked")
+    N pop() {
+      N node = (N)nodes[--size];
+      nodes[size] = null;
+      return node;
+    }
+  }
+  // +********************************************************************
+  // +********************************************************************
+  /**
+   * walks the tree for {@link BKCursor}, starting at the root
+   */
+  private static final class Cursor<V> extends BKCursor<V> {
+    private final NodeStack<BKNode<V>> stack = new NodeStack<BKNode<V>>();
+    private BKNode<V> node;
+    private LinkTable<V> links;
+
+    Cursor(BKNode<V> root) {
+      if( root!=null ) {
+        stack.push(root);
+      }
+    }
+    boolean next() {
+      if( stack.isEmpty() ) {
+        return false;
+      }
+      node = stack.pop();
+      links = node.getChildren();
+      return true;
+    }
+    V value() {
+      return node.getValue();
+    }
+    int slots() {
+      return links.size();
+    }
+    int distAt(int slot) {
+      return links.distAt(slot);
+    }
+    boolean push(int slot) {
+      BKNode<V> child = links.childAt(slot);
+      if( child==null ) {
+        return false;
+      }
+      stack.push(child);
+      return true;
+    }
+    int slotOf(int d) {
+      return links.slotOf(d);
+    }
+    int maxDist() {
+      return links.maxDist();
+    }
+  }
+  // +********************************************************************
+  // reports matches to sink and returns the limit reached, which is never
+  // larger than maxDist
+  int lookup(V queryValue, QueryScorer<V> scorer, int maxDist,
+             boolean distinct, LookupBudget budget,
+             ResultSink<? super V> sink)
+  {
+    return new Cursor<V>(root).lookup(queryValue, scorer, maxDist,
+                                      distinct, budget, sink);
   }
   // +********************************************************************
   /**
@@ -184,43 +563,88 @@ public class BKTree<V> implements Dictionary<V, Integer> {
    * </p>
    */
   public List<ResultElem<V,Integer>> lookup(V queryValue, Integer maxDist) {
-    return lookup(queryValue, maxDist, false);
+    return lookup(queryValue, maxDist, false, null);
   }
   /*+******************************************************************/
   public List<ResultElem<V, Integer>> lookupDistinct(V queryValue, 
                                                      Integer maxDist) {
-    return lookup(queryValue, maxDist, true);
+    return lookup(queryValue, maxDist, true, null);
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * like {@link #lookup(Object,Integer) lookup()}, but compares no more
+   * values with the query than the {@code budget} allows.
+   * </p>
+   */
+  public List<ResultElem<V,Integer>> lookup(V queryValue, Integer maxDist,
+                                            LookupBudget budget) {
+    return lookup(queryValue, maxDist, false, budget);
+  }
+  /*+******************************************************************/
+  public List<ResultElem<V, Integer>> lookupDistinct(V queryValue,
+                                                     Integer maxDist,
+                                                     LookupBudget budget) {
+    return lookup(queryValue, maxDist, true, budget);
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * passes every value at most {@code maxDist} away from {@code queryValue}
+   * to the {@code sink} as soon as it is found, without collecting the
+   * values in a list. The distance returned by the sink lowers
+   * {@code maxDist} for the rest of the lookup.
+   * </p>
+   */
+  public void lookup(V queryValue, int maxDist, ResultSink<? super V> sink) {
+    lookup(queryValue, maxDist, false, null, sink);
+  }
+  /*+******************************************************************/
+  public void lookupDistinct(V queryValue, int maxDist,
+                             ResultSink<? super V> sink) {
+    lookup(queryValue, maxDist, true, null, sink);
   }
   /*+******************************************************************/
   private List<ResultElem<V,Integer>> lookup(V queryValue, 
-                                             int maxDist, boolean distinct) {
-    List<ResultElem<V,Integer>> result =
-        new ArrayList<ResultElem<V,Integer>>();
-
-    if( root==null ) {
-      return result;
-    }
-
-    int bestDist = lookup(root, result, queryValue, maxDist, distinct);
-    if( result.size()==0 ) {
-      return result;
-    }
-
-    return filterBest(result, bestDist);
+                                             int maxDist, boolean distinct,
+                                             LookupBudget budget) {
+    BestResults<V> best = new BestResults<V>();
+    lookup(queryValue, maxDist, distinct, budget, best);
+    return best.toList();
   }
   /*+******************************************************************/
-  private List<ResultElem<V, Integer>> 
-  filterBest(List<ResultElem<V, Integer>> candidates,
-             int bestDist) {
-
-    List<ResultElem<V, Integer>> result = 
-      new ArrayList<ResultElem<V, Integer>>(candidates.size());
-    for(ResultElem<V,Integer> cand : candidates) {
-      if( cand.d==bestDist ) {
-        result.add(cand);
-      }
+  private void lookup(V queryValue, int maxDist, boolean distinct,
+                      LookupBudget budget, ResultSink<? super V> sink) {
+    if( root==null ) {
+      return;
     }
-    return result;
+    QueryScorer<V> scorer = metric.prepare(queryValue);
+    lookup(queryValue, scorer, maxDist, distinct, budget, sink);
   }
   // +********************************************************************
+  /**
+   * <p>
+   * returns the {@code k} values closest to {@code queryValue}, the
+   * closest first. The tree is searched depth first with the closest
+   * children first, and the search radius shrinks to the largest distance
+   * of the {@code k} values found so far as soon as there are
+   * {@code k}. Of values with equal distance, the ones found first are
+   * kept.
+   * </p>
+   */
+  public List<ResultElem<V,Integer>> nearest(V queryValue, int k) {
+    KNearest<V> heap = new KNearest<V>(k);
+    nearest(metric.prepare(queryValue), heap);
+    return heap.toList();
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * offers the values of this tree that may be closer to the query than
+   * {@link KNearest#bound heap.bound()} to {@code heap}.
+   * </p>
+   */
+  void nearest(QueryScorer<V> scorer, KNearest<V> heap) {
+    new Cursor<V>(root).nearest(scorer, heap);
+  }
 }
@@ -0,0 +1,47 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * is the {@link ResultSink} behind the list returning lookups. It keeps
+ * the values with the smallest distance seen and returns that distance as
+ * the limit, so the lookup only reports values at least as close.
+ * </p>
+ */
+final class BestResults<V> implements ResultSink<V> {
+  private final List<ResultElem<V,Integer>> best =
+      new ArrayList<ResultElem<V,Integer>>();
+  private int bestDist = Integer.MAX_VALUE;
+  /* +***************************************************************** */
+  @Override
+  public int found(V value, int d) {
+    if( d<bestDist ) {
+      best.clear();
+      bestDist = d;
+    }
+    if( d==bestDist ) {
+      best.add(new ResultElem<V,Integer>(value, d));
+    }
+    return bestDist;
+  }
+  /* +***************************************************************** */
+  List<ResultElem<V,Integer>> toList() {
+    return best;
+  }
+  /* +***************************************************************** */
+}
@@ -0,0 +1,51 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.util.List;
+
+/**
+ * <p>
+ * is a {@link Dictionary} with integer distances whose lookups can be
+ * limited by a {@link LookupBudget}. Code that only needs bounded lookups
+ * can use this type instead of one of the implementations, like
+ * {@link BKTree}, {@link FrozenBKTree}, {@link NgramDict} and
+ * {@link FrozenNgramDict}.
+ * </p>
+ * <p>
+ * A lookup stopped by its budget returns the best values among those
+ * compared so far. The result is then possibly not the result of a full
+ * lookup, which {@link LookupBudget#isExhausted} tells.
+ * </p>
+ *
+ * @param <T> the type of values stored in the dictionary
+ */
+public interface BudgetedDictionary<T> extends Dictionary<T,Integer> {
+  /**
+   * <p>
+   * like {@link #lookup(Object,Object) lookup()}, but stops once the
+   * {@code budget} is exhausted.
+   * </p>
+   */
+  List<ResultElem<T,Integer>> lookup(T queryValue, Integer maxDist,
+                                     LookupBudget budget);
+  /**
+   * <p>
+   * like {@link #lookupDistinct(Object,Object) lookupDistinct()}, but
+   * stops once the {@code budget} is exhausted.
+   * </p>
+   */
+  List<ResultElem<T,Integer>> lookupDistinct(T queryValue, Integer maxDist,
+                                             LookupBudget budget);
+}
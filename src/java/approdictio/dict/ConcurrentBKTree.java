@@ -0,0 +1,239 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * <p>
+ * is a thread safe {@link BKTree}. Any number of threads may add values
+ * and look up values at the same time without a global lock. A lookup
+ * sees all values whose {@code add()} returned before the lookup started
+ * and possibly some added while it runs. Lookups return the same results
+ * as a {@code BKTree}.
+ * </p>
+ * <p>
+ * <b>Background:</b> the children of a node are held in an immutable
+ * table of (distance, child) pairs sorted by distance. Adding a child
+ * creates a copy of the table with the new child and installs it with a
+ * compare-and-set on the node. If another thread changed the table in the
+ * meantime, the add starts over at the same node. Since nodes are never
+ * removed and tables never change once published, a reader always sees a
+ * consistent tree. Copying is cheap, because the number of children of a
+ * node is bounded by the largest distance between values.
+ * </p>
+ * <p>
+ * The metric must be thread safe, which {@code LevenshteinMetric} is.
+ * </p>
+ *
+ * @param <V> the type of objects stored in the tree
+ */
+public class ConcurrentBKTree<V> implements Dictionary<V, Integer> {
+  private final IntMetric<V> metric;
+  private final AtomicReference<Node<V>> root =
+      new AtomicReference<Node<V>>();
+  // +********************************************************************
+  public ConcurrentBKTree(IntMetric<V> metric) {
+    this.metric = metric;
+  }
+  // +********************************************************************
+  /**
+   * is an immutable table of children sorted by distance.
+   */
+  private static final class Links<V> {
+    private final int[] dists;
+    private final Node<V>[] nodes;
+
+    Links(int[] dists, Node<V>[] nodes) {
+      this.dists = dists;
+      this.nodes = nodes;
+    }
+    int slotOf(int d) {
+      int i = Arrays.binarySearch(dists, d);
+      return i<0 ? -i-1 : i;
+    }
+    Node<V> get(int d) {
+      int i = Arrays.binarySearch(dists, d);
+      return i<0 ? null : nodes[i];
+    }
+    Links<V> with(int d, Node<V> node) {
+      int i = -Arrays.binarySearch(dists, d)-1;
+      int n = dists.length;
+      int[] ds = new int[n+1];
+      @SuppressWarnings("unchecked")
+      Node<V>[] ns = new Node[n+1];
+      System.arraycopy(dists, 0, ds, 0, i);
+      System.arraycopy(nodes, 0, ns, 0, i);
+      ds[i] = d;
+      ns[i] = node;
+      System.arraycopy(dists, i, ds, i+1, n-i);
+      System.arraycopy(nodes, i, ns, i+1, n-i);
+      return new Links<V>(ds, ns);
+    }
+  }
+  // +********************************************************************
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<Node, Links> LINKS =
+      AtomicReferenceFieldUpdater.newUpdater(Node.class, Links.class,
+                                             "links");
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static final Links EMPTY = new Links(new int[0], new Node[0]);
+
+  private static final class Node<V> {
+    private final V value;
+    @SuppressWarnings("unchecked")
+    volatile Links<V> links = EMPTY;
+
+    Node(V value) {
+      this.value = value;
+    }
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * adds the value to the tree, unless a value with distance zero is
+   * already stored. May be called concurrently from any number of threads.
+   * </p>
+   */
+  public void add(V value) {
+    Node<V> node = root.get();
+    if( node==null ) {
+      if( root.compareAndSet(null, new Node<V>(value)) ) {
+        return;
+      }
+      node = root.get();
+    }
+    Node<V> fresh = null;
+    while( true ) {
+      int d = metric.d(node.value, value);
+      if( d==0 ) {
+        return;
+      }
+      Node<V> child;
+      while( true ) {
+        Links<V> links = node.links;
+        child = links.get(d);
+        if( child!=null ) {
+          break;
+        }
+        if( fresh==null ) {
+          fresh = new Node<V>(value);
+        }
+        if( LINKS.compareAndSet(node, links, links.with(d, fresh)) ) {
+          return;
+        }
+        // lost a race for this node's table, d is still valid
+      }
+      node = child;
+    }
+  }
+  // +********************************************************************
+  public List<ResultElem<V,Integer>> lookup(V queryValue, Integer maxDist) {
+    BestResults<V> best = new BestResults<V>();
+    lookup(queryValue, maxDist, false, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  public List<ResultElem<V, Integer>> lookupDistinct(V queryValue,
+                                                     Integer maxDist) {
+    BestResults<V> best = new BestResults<V>();
+    lookup(queryValue, maxDist, true, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * passes every value at most {@code maxDist} away from {@code queryValue}
+   * to the {@code sink} as soon as it is found, like
+   * {@link BKTree#lookup(Object,int,ResultSink) BKTree.lookup()}.
+   * </p>
+   */
+  public void lookup(V queryValue, int maxDist, ResultSink<? super V> sink) {
+    lookup(queryValue, maxDist, false, sink);
+  }
+  /*+******************************************************************/
+  public void lookupDistinct(V queryValue, int maxDist,
+                             ResultSink<? super V> sink) {
+    lookup(queryValue, maxDist, true, sink);
+  }
+  /*+******************************************************************/
+  private void lookup(V queryValue, int maxDist, boolean distinct,
+                      ResultSink<? super V> sink) {
+    Node<V> top = root.get();
+    if( top==null ) {
+      return;
+    }
+
+    QueryScorer<V> scorer = metric.prepare(queryValue);
+    new Cursor<V>(top).lookup(queryValue, scorer, maxDist, distinct, null,
+                              sink);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * returns the {@code k} values closest to {@code queryValue}, like
+   * {@link BKTree#nearest BKTree.nearest()}.
+   * </p>
+   */
+  public List<ResultElem<V,Integer>> nearest(V queryValue, int k) {
+    KNearest<V> heap = new KNearest<V>(k);
+    Node<V> top = root.get();
+    if( top!=null ) {
+      new Cursor<V>(top).nearest(metric.prepare(queryValue), heap);
+    }
+    return heap.toList();
+  }
+  // +********************************************************************
+  /**
+   * walks the tree for {@link BKCursor} on the tables read once per node,
+   * such that a table replaced meanwhile does not disturb the walk
+   */
+  private static final class Cursor<V> extends BKCursor<V> {
+    private final BKTree.NodeStack<Node<V>> stack =
+        new BKTree.NodeStack<Node<V>>();
+    private Node<V> node;
+    private Links<V> links;
+
+    Cursor(Node<V> root) {
+      stack.push(root);
+    }
+    boolean next() {
+      if( stack.isEmpty() ) {
+        return false;
+      }
+      node = stack.pop();
+      links = node.links;
+      return true;
+    }
+    V value() {
+      return node.value;
+    }
+    int slots() {
+      return links.dists.length;
+    }
+    int distAt(int slot) {
+      return links.dists[slot];
+    }
+    boolean push(int slot) {
+      stack.push(links.nodes[slot]);
+      return true;
+    }
+    int slotOf(int d) {
+      return links.slotOf(d);
+    }
+  }
+}
@@ -0,0 +1,207 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.util.List;
+
+/**
+ * <p>
+ * is a thread safe {@link NgramDict}: terms may be added while any number
+ * of threads look up terms, and lookups never wait for a lock. A lookup
+ * sees all terms whose {@code add()} returned before the lookup started.
+ * The results are the same as those of an {@code NgramDict} with the same
+ * parameters and terms.
+ * </p>
+ * <p>
+ * <b>Background:</b> the terms are kept in a list of segments, each an
+ * {@code NgramDict} which is never modified once published. The list
+ * itself is replaced as a whole, through a volatile field, so a lookup
+ * works on a consistent snapshot. {@code add()} puts the new term into a
+ * segment of its own and merges it with the last segments as long as it
+ * is at least half the size of its predecessor. A merge concatenates the
+ * posting lists of the two segments and does not compute n-grams again.
+ * Every term is thereby copied O(log n) times, and a lookup visits
+ * O(log n) segments.
+ * Adds are serialized, and an add that triggers a merge of large segments
+ * takes correspondingly long, while lookups proceed on the previous
+ * snapshot.
+ * </p>
+ */
+public class ConcurrentNgramDict implements Dictionary<String, Integer> {
+  private final int ngramLen;
+  private final IntMetric<String> metric;
+  private final int editWindow;
+
+  private volatile NgramDict[] segments = new NgramDict[0];
+
+  private final NgramDict.Scratches scratch;
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * creates a dictionary with the parameters described for
+   * {@link NgramDict#NgramDict(int, IntMetric)}.
+   * </p>
+   */
+  public ConcurrentNgramDict(int ngramLen, IntMetric<String> metric) {
+    this(ngramLen, metric, false);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * creates a dictionary with the parameters described for
+   * {@link NgramDict#NgramDict(int, IntMetric, boolean)}.
+   * </p>
+   */
+  public ConcurrentNgramDict(int ngramLen, IntMetric<String> metric,
+                             boolean exactRecall) {
+    this.editWindow = NgramDict.editWindow(ngramLen, metric, exactRecall);
+    this.ngramLen = ngramLen;
+    this.metric = metric;
+    this.scratch = new NgramDict.Scratches(ngramLen);
+  }
+  /* +***************************************************************** */
+  public synchronized void add(String value) {
+    NgramDict[] segs = segments;
+    for(NgramDict seg : segs) {
+      if( seg.contains(value) ) {
+        return;
+      }
+    }
+    NgramDict last = new NgramDict(ngramLen, metric, editWindow);
+    NgramDict.Scratch s = scratch.acquire();
+    try {
+      last.add(value, s.query);
+    } finally {
+      s.release();
+    }
+    int n = segs.length;
+    while( n>0 && 2*last.getTermCount()>=segs[n-1].getTermCount() ) {
+      last = NgramDict.merge(segs[n-1], last);
+      n -= 1;
+    }
+    NgramDict[] next = new NgramDict[n+1];
+    System.arraycopy(segs, 0, next, 0, n);
+    next[n] = last;
+    segments = next;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the number of terms stored.
+   * </p>
+   */
+  public int size() {
+    int size = 0;
+    for(NgramDict seg : segments) {
+      size += seg.getTermCount();
+    }
+    return size;
+  }
+  /* +***************************************************************** */
+  public List<ResultElem<String,Integer>> lookup(String queryValue,
+                                                 Integer maxDist) {
+    BestResults<String> best = new BestResults<String>();
+    lookup(queryValue, maxDist, false, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  public List<ResultElem<String,Integer>> lookupDistinct(String queryValue,
+                                                         Integer maxDist) {
+    BestResults<String> best = new BestResults<String>();
+    lookup(queryValue, maxDist, true, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * passes the terms found for {@code queryValue} to the {@code sink}, see
+   * {@link NgramDict#lookup(String,int,ResultSink) NgramDict.lookup()}.
+   * </p>
+   */
+  public void lookup(String queryValue, int maxDist,
+                     ResultSink<? super String> sink) {
+    lookup(queryValue, maxDist, false, sink);
+  }
+  /*+******************************************************************/
+  public void lookupDistinct(String queryValue, int maxDist,
+                             ResultSink<? super String> sink) {
+    lookup(queryValue, maxDist, true, sink);
+  }
+  /*+******************************************************************/
+  private void lookup(String queryValue, int maxDist, boolean distinct,
+                      ResultSink<? super String> sink) {
+    NgramDict.Scratch s = scratch.acquire();
+    try {
+      lookup(queryValue, maxDist, distinct, sink, s);
+    } finally {
+      s.release();
+    }
+  }
+  /*+******************************************************************/
+  private void lookup(String queryValue, int maxDist, boolean distinct,
+                      ResultSink<? super String> sink, NgramDict.Scratch s) {
+    NgramDict[] segs = segments;
+    List<String> candidates = s.terms;
+    IntStack dists = s.termDists;
+    candidates.clear();
+    dists.clear();
+    int minNgramDist = Integer.MAX_VALUE;
+    for(NgramDict seg : segs) {
+      int m = seg.collect(queryValue, maxDist, distinct, s);
+      minNgramDist = Math.min(minNgramDist, m);
+      for(int i = 0, l = s.ids.size(); i<l; i++) {
+        candidates.add(seg.getTerm(s.ids.get(i)));
+        dists.push(s.dists.get(i));
+      }
+    }
+
+    // the curation of NgramDict over the candidates of all segments
+    int limit = maxDist;
+    QueryScorer<String> scorer = metric.prepare(queryValue);
+    for(int i = 0, l = candidates.size(); i<l && limit>=0; i++) {
+      if( !NgramDict.eligible(dists.get(i), minNgramDist, ngramLen) ) {
+        continue;
+      }
+      String value = candidates.get(i);
+      int d = scorer.d(value, limit);
+      if( d>limit ) {
+        continue;
+      }
+      limit = Math.min(limit, sink.found(value, d));
+    }
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the {@code k} terms closest to {@code queryValue}, like
+   * {@link NgramDict#nearest NgramDict.nearest()}. All segments offer
+   * their terms to one result heap, so later segments profit from the
+   * bound established by earlier ones.
+   * </p>
+   */
+  public List<ResultElem<String,Integer>> nearest(String queryValue,
+                                                  int k) {
+    KNearest<String> heap = new KNearest<String>(k);
+    QueryScorer<String> scorer = metric.prepare(queryValue);
+    NgramDict.Scratch s = scratch.acquire();
+    try {
+      for(NgramDict seg : segments) {
+        seg.nearest(queryValue, scorer, heap, s);
+      }
+    } finally {
+      s.release();
+    }
+    return heap.toList();
+  }
+}
@@ -75,5 +75,36 @@ public interface Dictionary<T, DTYPE> {
    *         other values are found.
    */
   List<ResultElem<T,DTYPE>> lookupDistinct(T queryValue, DTYPE limit);
-  
+
+  /**
+   * <p>
+   * returns the {@code k} values most similar to {@code queryValue}, the
+   * most similar first, without a limit on the distance. Values equally
+   * similar are returned in an order defined by the implementation, and
+   * if there are more of them than fit into {@code k}, the ones returned
+   * are chosen by the implementation. If the query value is contained in
+   * the dictionary, it is returned, too.
+   * </p>
+   * <p>
+   * Implementations that do not compare all values with the query, like
+   * {@link NgramDict} without exact recall, may miss values and return
+   * fewer than {@code k} values even if the dictionary is large enough.
+   * </p>
+   * <p>
+   * The default implementation throws an
+   * {@link UnsupportedOperationException}, since without knowing the
+   * similarity measure there is no way to rank values. All dictionaries
+   * of this package override it.
+   * </p>
+   *
+   * @return a list of at most {@code k} result elements ordered by
+   *         similarity
+   * @throws IllegalArgumentException if {@code k} is negative
+   * @throws UnsupportedOperationException if the dictionary cannot rank
+   *         its values
+   */
+  default List<ResultElem<T,DTYPE>> nearest(T queryValue, int k) {
+    throw new UnsupportedOperationException(getClass().getName()
+        +" does not implement nearest()");
+  }
 }
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,14 +52,19 @@ import java.util.Map;
  * {@link BKStableLookup} to fetch results.</p>
  */
 public final class Didyoumean {
-  private final Dictionary<String, Integer> dict;
+  private final BudgetedDictionary<String> dict;
 
   private final Map<String, Integer> weights;
 
   /* +***************************************************************** */
-  private Didyoumean(Dictionary<String, Integer> dict) {
+  private Didyoumean(BudgetedDictionary<String> dict) {
+    this(dict, new HashMap<String, Integer>());
+  }
+  /* +***************************************************************** */
+  private Didyoumean(BudgetedDictionary<String> dict,
+                     Map<String, Integer> weights) {
     this.dict = dict;
-    weights = new HashMap<String, Integer>();
+    this.weights = weights;
   }
   /* +***************************************************************** */
   /**
@@ -79,10 +85,46 @@ public final class Didyoumean {
    */
   public static Didyoumean instanceBKTree(IntMetric<String> metric)
   {
-    final Dictionary<String, Integer> d = new BKTree<String>(metric);
+    final BudgetedDictionary<String> d = new BKTree<String>(metric);
     return new Didyoumean(d);
   }
   /* +***************************************************************** */
+  /**
+   * <p>
+   * creates an immutable copy which finds the same terms with the same
+   * weights, backed by a frozen copy of the dictionary, for example a
+   * {@link FrozenBKTree}. The copy can be shared between threads without
+   * synchronization, given that the metric is thread safe. Terms added to
+   * this object later are not seen by the copy.
+   * </p>
+   * <p>
+   * To refresh a dictionary while serving lookups, fill a new
+   * {@code Didyoumean} in the background, freeze it and assign the frozen
+   * copy to the field that lookups read.
+   * </p>
+   * <p>
+   * The methods that add terms throw an
+   * {@code UnsupportedOperationException} when called on the copy.
+   * </p>
+   */
+  public Didyoumean freeze() {
+    Map<String, Integer> w = new HashMap<String, Integer>(weights);
+    return new Didyoumean(freeze(dict), Collections.unmodifiableMap(w));
+  }
+  /* +***************************************************************** */
+  private static BudgetedDictionary<String>
+  freeze(BudgetedDictionary<String> dict)
+  {
+    if( dict instanceof BKTree ) {
+      return ((BKTree<String>)dict).freeze();
+    }
+    if( dict instanceof NgramDict ) {
+      return ((NgramDict)dict).freeze();
+    }
+    // already frozen
+    return dict;
+  }
+  /* +***************************************************************** */
   /**
    * <p>
    * adds a term together with its assigned weight. Higher weights are
@@ -199,7 +241,7 @@ public final class Didyoumean {
    *         have the highest weight assigned.
    */
   public List<ResultElem<String, Integer>> lookup(String word, Integer maxDist) {
-    return lookup(word, maxDist, false);
+    return lookup(word, maxDist, false, null);
   }
   /* +***************************************************************** */
   /**
@@ -210,20 +252,47 @@ public final class Didyoumean {
    */
   public List<ResultElem<String,Integer>> lookupDistinct(String word,
                                                          Integer maxDist) {
-    return lookup(word, maxDist, true);
+    return lookup(word, maxDist, true, null);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * like {@link #lookup(String,Integer) lookup()}, but the lookup in the
+   * internal {@link Dictionary} compares no more terms with {@code word}
+   * than the {@code budget} allows.
+   * </p>
+   */
+  public List<ResultElem<String,Integer>> lookup(String word,
+                                                 Integer maxDist,
+                                                 LookupBudget budget) {
+    return lookup(word, maxDist, false, budget);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * like {@link #lookupDistinct(String,Integer) lookupDistinct()}, but the
+   * lookup in the internal {@link Dictionary} compares no more terms with
+   * {@code word} than the {@code budget} allows.
+   * </p>
+   */
+  public List<ResultElem<String,Integer>> lookupDistinct(String word,
+                                                         Integer maxDist,
+                                                         LookupBudget budget) {
+    return lookup(word, maxDist, true, budget);
   }
   /* +***************************************************************** */
   private List<ResultElem<String,Integer>> lookup(String word,
                                                   int maxDist,
-                                                  boolean distinct)
+                                                  boolean distinct,
+                                                  LookupBudget budget)
   {
     List<ResultElem<String,Integer>> result = newResultList();
 
     List<ResultElem<String,Integer>> similarWords;
     if( distinct ) {
-      similarWords = dict.lookupDistinct(word, maxDist);
+      similarWords = dict.lookupDistinct(word, maxDist, budget);
     } else {
-      similarWords = dict.lookup(word, maxDist);
+      similarWords = dict.lookup(word, maxDist, budget);
     }
     int bestWeight = convertToWeights(similarWords, result);
 
@@ -265,7 +334,6 @@ public final class Didyoumean {
    * </p>
    */
   public Class<?> getDictClass() {
-    dict.add("s");
     return dict.getClass();
   }
   /* +***************************************************************** */
@@ -0,0 +1,41 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+/**
+ * <p>
+ * is a {@link LengthBoundedMetric} which can tell whether its distance is
+ * at least the number of edit operations needed to turn one string into
+ * the other, where one operation changes at most {@link #editSpan}
+ * adjacent characters, compared exactly. Insertion, deletion and
+ * substitution change one character, a swap of neighbours changes two.
+ * </p>
+ * <p>
+ * With this guarantee, a single edit destroys at most
+ * {@code n+editSpan()-1} of the n-grams of a string. An {@link NgramDict}
+ * in exact recall mode uses this to derive how many n-grams a match must
+ * share with the query.
+ * </p>
+ */
+public interface EditCountMetric extends LengthBoundedMetric {
+  /**
+   * <p>
+   * returns the largest number of adjacent characters changed by one edit
+   * operation, or 0 if this metric object cannot guarantee that its
+   * distance is at least the number of edit operations, for example
+   * because it ignores case.
+   * </p>
+   */
+  int editSpan();
+}
@@ -0,0 +1,230 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * is an immutable, compact copy of a {@link BKTree}, created with
+ * {@link BKTree#freeze}. It finds the same values as the tree it was
+ * created from, but uses a fraction of the memory and is faster to
+ * traverse.
+ * </p>
+ * <p>
+ * <b>Layout:</b> nodes are numbered in breadth first order, such that the
+ * children of a node have consecutive numbers. Per node, only the value,
+ * the number of its first child and the distance to its parent are stored,
+ * each in an array indexed by node number. The children of node {@code i}
+ * are the nodes from {@code firstChild[i]} up to but excluding
+ * {@code firstChild[i+1]}, sorted by their distance to node {@code i}.
+ * </p>
+ * <p>
+ * Since it is never modified, a {@code FrozenBKTree} can be shared between
+ * threads without synchronization, given that the metric is thread safe.
+ * </p>
+ * 
+ * @param <V> the type of objects stored in the tree
+ */
+public class FrozenBKTree<V> implements BudgetedDictionary<V> {
+  private final IntMetric<V> metric;
+  private final Object[] values;
+  private final int[] firstChild;
+  private final int[] parentDist;
+
+  // +********************************************************************
+  FrozenBKTree(IntMetric<V> metric, BKNode<V> root) {
+    this.metric = metric;
+    // the list serves as the BFS queue and defines the node numbers
+    List<BKNode<V>> order = new ArrayList<BKNode<V>>();
+    if( root!=null ) {
+      order.add(root);
+    }
+    for(int i = 0; i<order.size(); i++) {
+      BKTree.LinkTable<V> links = order.get(i).getChildren();
+      for(int slot = 0, l = links.size(); slot<l; slot++) {
+        BKNode<V> child = links.childAt(slot);
+        if( child!=null ) {
+          order.add(child);
+        }
+      }
+    }
+
+    int n = order.size();
+    values = new Object[n];
+    firstChild = new int[n+1];
+    parentDist = new int[n];
+    int next = 1;
+    for(int i = 0; i<n; i++) {
+      BKNode<V> node = order.get(i);
+      values[i] = node.getValue();
+      firstChild[i] = next;
+      BKTree.LinkTable<V> links = node.getChildren();
+      for(int slot = 0, l = links.size(); slot<l; slot++) {
+        if( links.childAt(slot)!=null ) {
+          parentDist[next++] = links.distAt(slot);
+        }
+      }
+    }
+    firstChild[n] = next;
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * returns the number of values stored.
+   * </p>
+   */
+  public int size() {
+    return values.length;
+  }
+  // +********************************************************************
+  // node accessors for MappedBKTree.write
+  Object valueAt(int node) {
+    return values[node];
+  }
+  int firstChild(int node) {
+    return firstChild[node];
+  }
+  int parentDist(int node) {
+    return parentDist[node];
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * is not supported, since a frozen tree is immutable.
+   * </p>
+   * 
+   * @throws UnsupportedOperationException always
+   */
+  public void add(V value) {
+    throw new UnsupportedOperationException("a FrozenBKTree is immutable");
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * looks up the given value and returns all values stored that are at most
+   * {@code maxDist} away from the given value, exactly like
+   * {@link BKTree#lookup BKTree.lookup()}.
+   * </p>
+   */
+  public List<ResultElem<V,Integer>> lookup(V queryValue, Integer maxDist) {
+    return lookup(queryValue, maxDist, false, null);
+  }
+  /*+******************************************************************/
+  public List<ResultElem<V, Integer>> lookupDistinct(V queryValue,
+                                                     Integer maxDist) {
+    return lookup(queryValue, maxDist, true, null);
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * like {@link #lookup(Object,Integer) lookup()}, but compares no more
+   * values with the query than the {@code budget} allows.
+   * </p>
+   */
+  public List<ResultElem<V,Integer>> lookup(V queryValue, Integer maxDist,
+                                            LookupBudget budget) {
+    return lookup(queryValue, maxDist, false, budget);
+  }
+  /*+******************************************************************/
+  public List<ResultElem<V, Integer>> lookupDistinct(V queryValue,
+                                                     Integer maxDist,
+                                                     LookupBudget budget) {
+    return lookup(queryValue, maxDist, true, budget);
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * passes every value at most {@code maxDist} away from {@code queryValue}
+   * to the {@code sink} as soon as it is found, exactly like
+   * {@link BKTree#lookup(Object,int,ResultSink) BKTree.lookup()}.
+   * </p>
+   */
+  public void lookup(V queryValue, int maxDist, ResultSink<? super V> sink) {
+    lookup(queryValue, maxDist, false, null, sink);
+  }
+  /*+******************************************************************/
+  public void lookupDistinct(V queryValue, int maxDist,
+                             ResultSink<? super V> sink) {
+    lookup(queryValue, maxDist, true, null, sink);
+  }
+  /*+******************************************************************/
+  private List<ResultElem<V,Integer>> lookup(V queryValue,
+                                             int maxDist, boolean distinct,
+                                             LookupBudget budget) {
+    BestResults<V> best = new BestResults<V>();
+    lookup(queryValue, maxDist, distinct, budget, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  private void lookup(V queryValue, int maxDist, boolean distinct,
+                      LookupBudget budget, ResultSink<? super V> sink) {
+    if( values.length==0 ) {
+      return;
+    }
+
+    QueryScorer<V> scorer = metric.prepare(queryValue);
+    new Cursor().lookup(queryValue, scorer, maxDist, distinct, budget, sink);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * returns the {@code k} values closest to {@code queryValue}, exactly
+   * like {@link BKTree#nearest BKTree.nearest()}.
+   * </p>
+   */
+  public List<ResultElem<V,Integer>> nearest(V queryValue, int k) {
+    KNearest<V> heap = new KNearest<V>(k);
+    if( values.length>0 ) {
+      new Cursor().nearest(metric.prepare(queryValue), heap);
+    }
+    return heap.toList();
+  }
+  // +********************************************************************
+  /**
+   * walks the node numbers for {@link BKCursor}, starting at the root
+   */
+  private final class Cursor extends BKCursor<V> {
+    private final IntStack stack = new IntStack();
+    private int node;
+    private int from;
+
+    Cursor() {
+      stack.push(0);
+    }
+    boolean next() {
+      if( stack.isEmpty() ) {
+        return false;
+      }
+      node = stack.pop();
+      from = firstChild[node];
+      return true;
+    }
+    @SuppressWarnings("unchecked")
+    V value() {
+      return (V)values[node];
+    }
+    int slots() {
+      return firstChild[node+1]-from;
+    }
+    int distAt(int slot) {
+      return parentDist[from+slot];
+    }
+    boolean push(int slot) {
+      stack.push(from+slot);
+      return true;
+    }
+  }
+}
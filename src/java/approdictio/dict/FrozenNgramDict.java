@@ -0,0 +1,110 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.util.List;
+
+/**
+ * <p>
+ * is an immutable, compact copy of an {@link NgramDict}, created with
+ * {@link NgramDict#freeze}. It finds the same values as the dictionary it
+ * was created from. Its tables are trimmed to size and the map from terms
+ * to ids, which is only needed to add terms, is dropped.
+ * </p>
+ * <p>
+ * Since it is never modified, a {@code FrozenNgramDict} can be shared
+ * between threads without synchronization, given that the metric is thread
+ * safe.
+ * </p>
+ */
+public final class FrozenNgramDict
+    implements BudgetedDictionary<String> {
+  // the final field publishes the copy's tables safely to all threads
+  private final NgramDict dict;
+  // +********************************************************************
+  FrozenNgramDict(NgramDict dict) {
+    this.dict = dict;
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * returns the number of terms stored.
+   * </p>
+   */
+  public int size() {
+    return dict.getTermCount();
+  }
+  // +********************************************************************
+  /**
+   * @throws UnsupportedOperationException always
+   */
+  public void add(String value) {
+    throw new UnsupportedOperationException("a FrozenNgramDict is immutable");
+  }
+  // +********************************************************************
+  public List<ResultElem<String,Integer>> lookup(String queryValue,
+                                                 Integer maxDist) {
+    return dict.lookup(queryValue, maxDist);
+  }
+  // +********************************************************************
+  public List<ResultElem<String,Integer>> lookupDistinct(String queryValue,
+                                                         Integer maxDist) {
+    return dict.lookupDistinct(queryValue, maxDist);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * passes the terms found for {@code queryValue} to the {@code sink}, see
+   * {@link NgramDict#lookup(String,int,ResultSink) NgramDict.lookup()}.
+   * </p>
+   */
+  public void lookup(String queryValue, int maxDist,
+                     ResultSink<? super String> sink) {
+    dict.lookup(queryValue, maxDist, sink);
+  }
+  // +********************************************************************
+  public void lookupDistinct(String queryValue, int maxDist,
+                             ResultSink<? super String> sink) {
+    dict.lookupDistinct(queryValue, maxDist, sink);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * like {@link #lookup(String,Integer) lookup()}, but compares no more
+   * candidates with the query than the {@code budget} allows.
+   * </p>
+   */
+  public List<ResultElem<String,Integer>> lookup(String queryValue,
+                                                 Integer maxDist,
+                                                 LookupBudget budget) {
+    return dict.lookup(queryValue, maxDist, budget);
+  }
+  // +********************************************************************
+  public List<ResultElem<String,Integer>> lookupDistinct(String queryValue,
+                                                         Integer maxDist,
+                                                         LookupBudget budget) {
+    return dict.lookupDistinct(queryValue, maxDist, budget);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * returns the {@code k} terms closest to {@code queryValue}, like
+   * {@link NgramDict#nearest NgramDict.nearest()}.
+   * </p>
+   */
+  public List<ResultElem<String,Integer>> nearest(String queryValue,
+                                                  int k) {
+    return dict.nearest(queryValue, k);
+  }
+}
@@ -39,4 +39,48 @@ public interface IntMetric<T> {
    * @return the distance between the objects given.
    */
   int d(T v1, T v2);
+
+  /**
+   * <p>
+   * computes the distance between the two given objects, but only as far as
+   * needed to decide whether it is at most {@code maxDist}. Callers which
+   * only need to know whether two objects are close should prefer this
+   * method, because implementations may stop computing early.
+   * </p>
+   * <p>
+   * The default implementation just calls {@link #d(Object,Object) d()}.
+   * </p>
+   * 
+   * @return the exact distance between the objects given, if it is at most
+   *         {@code maxDist}, otherwise some value greater than
+   *         {@code maxDist}.
+   */
+  default int d(T v1, T v2, int maxDist) {
+    return d(v1, v2);
+  }
+
+  /**
+   * <p>
+   * prepares the computation of distances between {@code query} and many
+   * other objects. Implementations can use this to preprocess the query
+   * once instead of for every distance computed.
+   * </p>
+   * <p>
+   * The default implementation returns a scorer that just calls
+   * {@link #d(Object,Object)} and {@link #d(Object,Object,int)} with
+   * {@code query} as the first parameter.
+   * </p>
+   */
+  default QueryScorer<T> prepare(final T query) {
+    return new QueryScorer<T>() {
+      @Override
+      public int d(T candidate) {
+        return IntMetric.this.d(query, candidate);
+      }
+      @Override
+      public int d(T candidate, int maxDist) {
+        return IntMetric.this.d(query, candidate, maxDist);
+      }
+    };
+  }
 }
@@ -0,0 +1,63 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+/**
+ * <p>
+ * is a growable stack of {@code int} values without boxing, used for
+ * iterative tree traversals and as a plain list of ints.
+ * </p>
+ */
+final class IntStack {
+  private int[] values;
+  private int size = 0;
+  /* +***************************************************************** */
+  IntStack() {
+    this(64);
+  }
+  /* +***************************************************************** */
+  IntStack(int initialSize) {
+    values = new int[Math.max(initialSize, 1)];
+  }
+  /* +***************************************************************** */
+  boolean isEmpty() {
+    return size==0;
+  }
+  /* +***************************************************************** */
+  int size() {
+    return size;
+  }
+  /* +***************************************************************** */
+  void clear() {
+    size = 0;
+  }
+  /* +***************************************************************** */
+  void push(int value) {
+    if( size==values.length ) {
+      int[] tmp = new int[2*size];
+      System.arraycopy(values, 0, tmp, 0, size);
+      values = tmp;
+    }
+    values[size++] = value;
+  }
+  /* +***************************************************************** */
+  int pop() {
+    return values[--size];
+  }
+  /* +***************************************************************** */
+  int get(int i) {
+    return values[i];
+  }
+  /* +***************************************************************** */
+}
@@ -0,0 +1,173 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * collects the {@code k} values with the smallest distances offered, for
+ * {@link Dictionary#nearest nearest()}. The values are kept in a binary
+ * max-heap on the distance, so the largest distance kept, which a new
+ * value must beat once {@code k} values are kept, is at the root. Of
+ * values with equal distances, the ones offered first are kept.
+ * </p>
+ */
+final class KNearest<V> {
+  // the arrays start small and grow up to k, since k may be huge to ask
+  // for all values ranked
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final int k;
+  private Object[] values;
+  private int[] dists;
+  // the order of offering, to break ties between equal distances
+  private int[] seqs;
+  private int size = 0;
+  private int seq = 0;
+  /* +***************************************************************** */
+  KNearest(int k) {
+    if( k<0 ) {
+      throw new IllegalArgumentException("k must not be negative but is "
+          +k);
+    }
+    this.k = k;
+    int capacity = Math.min(k, INITIAL_CAPACITY);
+    values = new Object[capacity];
+    dists = new int[capacity];
+    seqs = new int[capacity];
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the distance a value must be below to be kept, which is
+   * {@code Integer.MAX_VALUE} while fewer than {@code k} values are kept.
+   * </p>
+   */
+  int bound() {
+    if( size<k ) {
+      return Integer.MAX_VALUE;
+    }
+    return k==0 ? 0 : dists[0];
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the largest distance a value may still have to be kept, the
+   * search radius for the next value. It is negative if no value can be
+   * kept anymore.
+   * </p>
+   */
+  int radius() {
+    int bound = bound();
+    return bound==Integer.MAX_VALUE ? Integer.MAX_VALUE-1 : bound-1;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * keeps the value, if its distance is below {@link #bound}, dropping the
+   * value with the largest distance if {@code k} values were kept before.
+   * </p>
+   */
+  void offer(V value, int d) {
+    if( d>=bound() ) {
+      return;
+    }
+    int s = seq++;
+    if( size<k ) {
+      if( size==values.length ) {
+        grow();
+      }
+      int i = size++;
+      while( i>0 ) {
+        int parent = (i-1)>>>1;
+        if( !greater(d, s, dists[parent], seqs[parent]) ) {
+          break;
+        }
+        move(parent, i);
+        i = parent;
+      }
+      set(i, value, d, s);
+    } else {
+      siftDown(value, d, s);
+    }
+  }
+  /* +***************************************************************** */
+  private void grow() {
+    int capacity = (int)Math.min(2L*values.length, k);
+    values = Arrays.copyOf(values, capacity);
+    dists = Arrays.copyOf(dists, capacity);
+    seqs = Arrays.copyOf(seqs, capacity);
+  }
+  /* +***************************************************************** */
+  // puts the value at the root and moves it down to its place
+  private void siftDown(Object value, int d, int s) {
+    int i = 0;
+    while( true ) {
+      int child = 2*i+1;
+      if( child>=size ) {
+        break;
+      }
+      if( child+1<size && greater(dists[child+1], seqs[child+1],
+                                  dists[child], seqs[child]) ) {
+        child += 1;
+      }
+      if( !greater(dists[child], seqs[child], d, s) ) {
+        break;
+      }
+      move(child, i);
+      i = child;
+    }
+    set(i, value, d, s);
+  }
+  /* +***************************************************************** */
+  private static boolean greater(int d1, int s1, int d2, int s2) {
+    return d1>d2 || (d1==d2 && s1>s2);
+  }
+  private void move(int from, int to) {
+    set(to, values[from], dists[from], seqs[from]);
+  }
+  private void set(int i, Object value, int d, int s) {
+    values[i] = value;
+    dists[i] = d;
+    seqs[i] = s;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the values kept in order of ascending distance, values with
+   * equal distance in the order they were offered. The values are removed
+   * from the heap.
+   * </p>
+   */
+  List<ResultElem<V,Integer>> toList() {
+    @SuppressWarnings("unchecked")
+    ResultElem<V,Integer>[] sorted = new ResultElem[size];
+    // take the root until empty, which yields descending order
+    while( size>0 ) {
+      @SuppressWarnings("unchecked")
+      V value = (V)values[0];
+      sorted[size-1] = new ResultElem<V,Integer>(value, dists[0]);
+      size -= 1;
+      if( size>0 ) {
+        siftDown(values[size], dists[size], seqs[size]);
+      }
+      values[size] = null;
+    }
+    return new ArrayList<ResultElem<V,Integer>>(Arrays.asList(sorted));
+  }
+  /* +***************************************************************** */
+}
@@ -0,0 +1,32 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+/**
+ * <p>
+ * marks a metric on strings which is never smaller than the difference of
+ * the string lengths, i.e.
+ * </p>
+ * <blockquote>
+ * {@code d(s1, s2) >= |s1.length()-s2.length()|}
+ * </blockquote>
+ * <p>
+ * for all strings. Edit distances where inserting or deleting a character
+ * costs at least 1 have this property. Dictionaries use it to skip all
+ * terms whose length differs from the query's by more than the maximum
+ * distance, without computing any distance.
+ * </p>
+ */
+public interface LengthBoundedMetric extends IntMetric<String> {
+}
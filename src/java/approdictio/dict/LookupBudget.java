@@ -0,0 +1,119 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+/**
+ * <p>
+ * limits the work of a single lookup by a number of work units, a time
+ * span or both. For dictionaries, a work unit is the comparison of one
+ * stored value with the query by the metric. Once the budget is
+ * exhausted, the lookup stops and returns the best results among the
+ * values compared so far, which may miss values a complete lookup would
+ * have found. Use {@link #isExhausted} to tell afterwards.
+ * </p>
+ * <p>
+ * The time limit counts from the creation of the budget. To keep the
+ * overhead low, the clock is read for the first work unit and then only
+ * every {@value #CLOCK_INTERVAL} units, so a lookup may overrun the time
+ * limit by that many units. A work limit is independent of the machine's
+ * load and therefore gives reproducible results.
+ * </p>
+ * <p>
+ * A budget records the work spent, so it is meant for a single lookup
+ * in a single thread. Create a new one for each lookup.
+ * </p>
+ */
+public final class LookupBudget {
+  /** number of work units between two readings of the clock */
+  public static final int CLOCK_INTERVAL = 64;
+
+  private final long maxWork;
+  private final boolean timed;
+  private final long deadline;
+  private long spent = 0;
+  private boolean exhausted = false;
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * creates a budget of at most {@code maxWork} work units and at most
+   * {@code maxNanos} nanoseconds from now. Use {@code Long.MAX_VALUE} for
+   * no limit.
+   * </p>
+   */
+  public LookupBudget(long maxWork, long maxNanos) {
+    this.maxWork = maxWork;
+    this.timed = maxNanos<Long.MAX_VALUE;
+    this.deadline = timed ? System.nanoTime()+maxNanos : 0;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * creates a budget of at most {@code maxWork} work units.
+   * </p>
+   */
+  public static LookupBudget ofWork(long maxWork) {
+    return new LookupBudget(maxWork, Long.MAX_VALUE);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * creates a budget of at most {@code maxNanos} nanoseconds from now.
+   * </p>
+   */
+  public static LookupBudget ofNanos(long maxNanos) {
+    return new LookupBudget(Long.MAX_VALUE, maxNanos);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * spends one work unit and returns {@code true} if that was still
+   * within the budget. Once this returned {@code false}, it always does.
+   * </p>
+   */
+  boolean spend() {
+    if( exhausted ) {
+      return false;
+    }
+    if( spent>=maxWork ) {
+      exhausted = true;
+      return false;
+    }
+    if( timed && spent%CLOCK_INTERVAL==0
+        && System.nanoTime()-deadline>=0 ) {
+      exhausted = true;
+      return false;
+    }
+    spent += 1;
+    return true;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the number of work units spent.
+   * </p>
+   */
+  public long spent() {
+    return spent;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * tells whether a lookup was stopped, because the budget ran out.
+   * </p>
+   */
+  public boolean isExhausted() {
+    return exhausted;
+  }
+  /* +***************************************************************** */
+}
@@ -0,0 +1,341 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * is a read-only {@link BKTree} of strings served directly from a memory
+ * mapped file. The file is written once with {@link #write write()} and
+ * then opened with {@link #load load()} in milliseconds instead of
+ * rebuilding the tree with {@link BKTree#add add()}. The tree data stays
+ * outside of the Java heap, and several processes mapping the same file
+ * share one copy in the page cache.
+ * </p>
+ * <p>
+ * The metric is not stored in the file. It must be passed to
+ * {@code load()} and must be the metric the tree was built with, otherwise
+ * lookups miss values.
+ * </p>
+ * <p>
+ * <b>File format</b>, version {@value #VERSION}, all numbers big endian:
+ * </p>
+ * <pre>
+ * int     magic number 0x424B5452 ("BKTR")
+ * int     version
+ * int     n, the number of nodes
+ * int     c, the number of characters of all values
+ * int[n+1] first child of each node, see {@link FrozenBKTree}
+ * int[n]   distance of each node to its parent
+ * int[n+1] start of each value in the character table
+ * char[c]  the character table, UTF-16
+ * </pre>
+ * <p>
+ * Since a single mapping is limited to 2GB, so is the file.
+ * </p>
+ */
+public final class MappedBKTree implements Dictionary<String, Integer> {
+  private static final int MAGIC = 0x424B5452;
+  /** the version of the file format written */
+  public static final int VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+
+  private final IntMetric<String> metric;
+  private final int n;
+  private final IntBuffer firstChild;
+  private final IntBuffer parentDist;
+  private final IntBuffer valueStart;
+  private final CharBuffer chars;
+  // +********************************************************************
+  private MappedBKTree(IntMetric<String> metric, ByteBuffer buf,
+                       int n, int c) {
+    this.metric = metric;
+    this.n = n;
+    firstChild = slice(buf, HEADER_BYTES, 4*(n+1)).asIntBuffer();
+    parentDist = slice(buf, HEADER_BYTES+4*(n+1), 4*n).asIntBuffer();
+    valueStart = slice(buf, HEADER_BYTES+4*(2*n+1), 4*(n+1)).asIntBuffer();
+    chars = slice(buf, HEADER_BYTES+4*(3*n+2), 2*c).asCharBuffer();
+  }
+  // +********************************************************************
+  private static ByteBuffer slice(ByteBuffer buf, int from, int bytes) {
+    ByteBuffer tmp = buf.duplicate();
+    tmp.position(from);
+    tmp.limit(from+bytes);
+    return tmp.slice();
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * writes {@code tree} to {@code file} in the format described above.
+   * </p>
+   */
+  public static void write(BKTree<String> tree, File file)
+    throws IOException
+  {
+    FrozenBKTree<String> frozen = tree.freeze();
+    int n = frozen.size();
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      long c = 0;
+      for(int i = 0; i<n; i++) {
+        c += ((String)frozen.valueAt(i)).length();
+      }
+      if( HEADER_BYTES+12L*n+8+2*c>Integer.MAX_VALUE ) {
+        throw new IOException("tree too large for a single mapping");
+      }
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(n);
+      out.writeInt((int)c);
+      for(int i = 0; i<=n; i++) {
+        out.writeInt(i<n ? frozen.firstChild(i) : n);
+      }
+      for(int i = 0; i<n; i++) {
+        out.writeInt(frozen.parentDist(i));
+      }
+      int start = 0;
+      out.writeInt(start);
+      for(int i = 0; i<n; i++) {
+        start += ((String)frozen.valueAt(i)).length();
+        out.writeInt(start);
+      }
+      for(int i = 0; i<n; i++) {
+        out.writeChars((String)frozen.valueAt(i));
+      }
+    } finally {
+      out.close();
+    }
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * maps a file written by {@link #write write()} into memory.
+   * </p>
+   *
+   * @param metric must be the metric the tree in the file was built with
+   * @throws FileFormatException if the file is not a tree file of the
+   *         supported version, is truncated or its tables are inconsistent,
+   *         such that a lookup would read outside of them. Since the file
+   *         has no lines, the line number reported is 0.
+   */
+  public static MappedBKTree load(File file, IntMetric<String> metric)
+    throws IOException, FileFormatException
+  {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    ByteBuffer buf;
+    try {
+      FileChannel ch = raf.getChannel();
+      long size = ch.size();
+      if( size>Integer.MAX_VALUE ) {
+        throw format(file, "file larger than 2GB");
+      }
+      buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } finally {
+      raf.close();
+    }
+    if( buf.capacity()<HEADER_BYTES || buf.getInt(0)!=MAGIC ) {
+      throw format(file, "not a BKTree file");
+    }
+    int version = buf.getInt(4);
+    if( version!=VERSION ) {
+      throw format(file, "unsupported version "+version);
+    }
+    int n = buf.getInt(8);
+    int c = buf.getInt(12);
+    long expected = HEADER_BYTES+4L*(3*(long)n+2)+2L*c;
+    if( n<0 || c<0 || expected!=buf.capacity() ) {
+      throw format(file, "file size does not match header, truncated?");
+    }
+    checkTables(file, buf, n, c);
+    return new MappedBKTree(metric, buf, n, c);
+  }
+  // +********************************************************************
+  // reads the tables once, such that a corrupt file is reported here
+  // instead of failing during some later lookup
+  private static void checkTables(File file, ByteBuffer buf, int n, int c)
+    throws FileFormatException
+  {
+    int firstChild = HEADER_BYTES;
+    int parentDist = firstChild+4*(n+1);
+    int valueStart = parentDist+4*n;
+    // children come after their parent, which also rules out cycles
+    for(int i = 0; i<n; i++) {
+      int from = buf.getInt(firstChild+4*i);
+      int to = buf.getInt(firstChild+4*(i+1));
+      if( from<=i || from>to ) {
+        throw format(file, "bad child table at node "+i);
+      }
+      int last = 0;
+      for(int child = from; child<to && child<n; child++) {
+        int d = buf.getInt(parentDist+4*child);
+        if( d<last ) {
+          throw format(file, "bad parent distance at node "+child);
+        }
+        last = d;
+      }
+    }
+    if( buf.getInt(firstChild+4*n)!=n ) {
+      throw format(file, "bad child table at node "+n);
+    }
+    int last = 0;
+    for(int i = 0; i<=n; i++) {
+      int start = buf.getInt(valueStart+4*i);
+      if( start<last || start>c || (i==0 && start!=0) ) {
+        throw format(file, "bad value start at node "+i);
+      }
+      last = start;
+    }
+    if( last!=c ) {
+      throw format(file, "bad value start at node "+n);
+    }
+  }
+  // +********************************************************************
+  private static FileFormatException format(File file, String msg) {
+    FileFormatException e = new FileFormatException(msg, 0);
+    e.setFilename(file.getPath());
+    return e;
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * returns the number of values stored.
+   * </p>
+   */
+  public int size() {
+    return n;
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * is not supported, since a mapped tree is read-only.
+   * </p>
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void add(String value) {
+    throw new UnsupportedOperationException("a MappedBKTree is read-only");
+  }
+  // +********************************************************************
+  public List<ResultElem<String,Integer>> lookup(String queryValue,
+                                                 Integer maxDist) {
+    BestResults<String> best = new BestResults<String>();
+    lookup(queryValue, maxDist, false, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  public List<ResultElem<String, Integer>> lookupDistinct(String queryValue,
+                                                          Integer maxDist) {
+    BestResults<String> best = new BestResults<String>();
+    lookup(queryValue, maxDist, true, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * passes every value at most {@code maxDist} away from {@code queryValue}
+   * to the {@code sink} as soon as it is found, exactly like
+   * {@link BKTree#lookup(Object,int,ResultSink) BKTree.lookup()}.
+   * </p>
+   */
+  public void lookup(String queryValue, int maxDist,
+                     ResultSink<? super String> sink) {
+    lookup(queryValue, maxDist, false, sink);
+  }
+  /*+******************************************************************/
+  public void lookupDistinct(String queryValue, int maxDist,
+                             ResultSink<? super String> sink) {
+    lookup(queryValue, maxDist, true, sink);
+  }
+  /*+******************************************************************/
+  private void lookup(String queryValue, int maxDist, boolean distinct,
+                      ResultSink<? super String> sink) {
+    if( n==0 ) {
+      return;
+    }
+
+    QueryScorer<String> scorer = metric.prepare(queryValue);
+    new Cursor().lookup(queryValue, scorer, maxDist, distinct, null, sink);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * returns the {@code k} values closest to {@code queryValue}, exactly
+   * like {@link BKTree#nearest BKTree.nearest()}.
+   * </p>
+   */
+  public List<ResultElem<String,Integer>> nearest(String queryValue, int k) {
+    KNearest<String> heap = new KNearest<String>(k);
+    if( n>0 ) {
+      new Cursor().nearest(metric.prepare(queryValue), heap);
+    }
+    return heap.toList();
+  }
+  // +********************************************************************
+  /**
+   * walks the node numbers for {@link BKCursor} like FrozenBKTree, only
+   * reading from the buffers
+   */
+  private final class Cursor extends BKCursor<String> {
+    private final IntStack stack = new IntStack();
+    private char[] scratch = new char[16];
+    private int node;
+    private int from;
+
+    Cursor() {
+      stack.push(0);
+    }
+    boolean next() {
+      if( stack.isEmpty() ) {
+        return false;
+      }
+      node = stack.pop();
+      from = firstChild.get(node);
+      return true;
+    }
+    String value() {
+      int start = valueStart.get(node);
+      int l = valueStart.get(node+1)-start;
+      if( l>scratch.length ) {
+        scratch = new char[Math.max(l, 2*scratch.length)];
+      }
+      for(int i = 0; i<l; i++) {
+        scratch[i] = chars.get(start+i);
+      }
+      return new String(scratch, 0, l);
+    }
+    int slots() {
+      return firstChild.get(node+1)-from;
+    }
+    int distAt(int slot) {
+      return parentDist.get(from+slot);
+    }
+    boolean push(int slot) {
+      stack.push(from+slot);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,649 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * is a read-only {@link NgramDict} served directly from a memory mapped
+ * file. The index is written once with {@link #write write()} and opened
+ * with {@link #load load()} without rebuilding it, and it is kept outside
+ * of the Java heap. Lookups return the same results as the
+ * {@code NgramDict} the file was written from.
+ * </p>
+ * <p>
+ * The metric is not stored in the file and must be passed to
+ * {@code load()}. A dictionary in exact recall mode, see
+ * {@link NgramDict#NgramDict(int,IntMetric,boolean)}, keeps the mode, and
+ * its metric must then be suitable for exact recall.
+ * </p>
+ * <p>
+ * <b>File format</b>, version {@value #VERSION}, all numbers big endian:
+ * </p>
+ * <pre>
+ * int     magic number 0x4E47524D ("NGRM")
+ * int     version
+ * int     n-gram length
+ * int     t, the number of terms
+ * int     g, the number of n-grams
+ * int     c, the number of characters of all terms
+ * int     b, the number of bytes of all posting lists
+ * int     e, the edit window of exact recall mode, 0 without
+ * long[g]  the n-gram keys, sorted
+ * int[t+1] start of each term in the term character table
+ * int[t]   number of distinct n-grams of each term
+ * int[g+1] start of each posting list in the posting table
+ * char[c]  the term character table, UTF-16, in order of term id
+ * byte[b]  the posting table
+ * </pre>
+ * <p>
+ * N-gram keys are computed from the n-gram characters, see
+ * {@link NgramKeys}. The posting list of an n-gram contains the ids of the
+ * terms containing the n-gram in ascending order, each stored as the
+ * difference to its predecessor in a variable length encoding of 7 bits
+ * per byte, high bit set on all but the last byte.
+ * </p>
+ */
+public final class MappedNgramDict implements Dictionary<String, Integer> {
+  private static final int MAGIC = 0x4E47524D;
+  /** the version of the file format written */
+  public static final int VERSION = 3;
+  private static final int HEADER_BYTES = 32;
+
+  private final IntMetric<String> metric;
+  private final boolean lengthBounded;
+  private final int ngramLen;
+  // the number of n-grams one edit can destroy, 0 without exact recall
+  private final int editWindow;
+  private final int terms;
+  private final int ngrams;
+  private final IntBuffer termStart;
+  private final IntBuffer termNgrams;
+  private final IntBuffer postingStart;
+  private final CharBuffer termChars;
+  private final LongBuffer ngramKeys;
+  private final ByteBuffer postings;
+
+  private final NgramDict.Scratches scratch;
+  /* +***************************************************************** */
+  private MappedNgramDict(IntMetric<String> metric, ByteBuffer buf,
+                          int ngramLen, int e, int t, int g, int c,
+                          int b) {
+    this.metric = metric;
+    this.lengthBounded = metric instanceof LengthBoundedMetric;
+    this.ngramLen = ngramLen;
+    this.editWindow = e;
+    this.scratch = new NgramDict.Scratches(ngramLen);
+    this.terms = t;
+    this.ngrams = g;
+    int pos = HEADER_BYTES;
+    ngramKeys = slice(buf, pos, 8*g).asLongBuffer();
+    pos += 8*g;
+    termStart = slice(buf, pos, 4*(t+1)).asIntBuffer();
+    pos += 4*(t+1);
+    termNgrams = slice(buf, pos, 4*t).asIntBuffer();
+    pos += 4*t;
+    postingStart = slice(buf, pos, 4*(g+1)).asIntBuffer();
+    pos += 4*(g+1);
+    termChars = slice(buf, pos, 2*c).asCharBuffer();
+    pos += 2*c;
+    postings = slice(buf, pos, b);
+  }
+  /* +***************************************************************** */
+  private static ByteBuffer slice(ByteBuffer buf, int from, int bytes) {
+    ByteBuffer tmp = buf.duplicate();
+    tmp.position(from);
+    tmp.limit(from+bytes);
+    return tmp.slice();
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * writes the index of {@code dict} to {@code file} in the format
+   * described above.
+   * </p>
+   */
+  public static void write(NgramDict dict, File file) throws IOException {
+    // one index over all term lengths
+    PostingMap index = new PostingMap();
+    NgramKeys ngrams = new NgramKeys(dict.getNgramLen());
+    int t = dict.getTermCount();
+    long c = 0;
+    for(int id = 0; id<t; id++) {
+      String term = dict.getTerm(id);
+      c += term.length();
+      for(int i = 0, n = ngrams.compute(term); i<n; i++) {
+        index.add(ngrams.key(i), id);
+      }
+    }
+
+    long[] keys = new long[index.size()];
+    int g = 0;
+    for(int slot = 0; slot<index.capacity(); slot++) {
+      if( index.isUsed(slot) ) {
+        keys[g++] = index.keyAt(slot);
+      }
+    }
+    Arrays.sort(keys);
+
+    // encode the posting lists first to know their size
+    ByteArrayOutputStream postingBytes = new ByteArrayOutputStream();
+    int[] starts = new int[g+1];
+    for(int i = 0; i<g; i++) {
+      int slot = index.slot(keys[i]);
+      int[] list = index.list(slot);
+      int prev = 0;
+      for(int j = 0, l = index.listSize(slot); j<l; j++) {
+        writeVarint(postingBytes, list[j]-prev);
+        prev = list[j];
+      }
+      starts[i+1] = postingBytes.size();
+    }
+
+    long size = HEADER_BYTES+8L*g+4L*(2*t+1)+4L*(g+1)+2*c
+        +postingBytes.size();
+    if( size>Integer.MAX_VALUE ) {
+      throw new IOException("index too large for a single mapping");
+    }
+
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(dict.getNgramLen());
+      out.writeInt(t);
+      out.writeInt(g);
+      out.writeInt((int)c);
+      out.writeInt(postingBytes.size());
+      out.writeInt(dict.getEditWindow());
+      for(int i = 0; i<g; i++) {
+        out.writeLong(keys[i]);
+      }
+      int start = 0;
+      out.writeInt(start);
+      for(int id = 0; id<t; id++) {
+        start += dict.getTerm(id).length();
+        out.writeInt(start);
+      }
+      for(int id = 0; id<t; id++) {
+        out.writeInt(dict.getTermNgrams(id));
+      }
+      for(int i = 0; i<=g; i++) {
+        out.writeInt(starts[i]);
+      }
+      for(int id = 0; id<t; id++) {
+        out.writeChars(dict.getTerm(id));
+      }
+      postingBytes.writeTo(out);
+    } finally {
+      out.close();
+    }
+  }
+  /* +***************************************************************** */
+  private static void writeVarint(ByteArrayOutputStream out, int v) {
+    while( (v&~0x7F)!=0 ) {
+      out.write((v&0x7F)|0x80);
+      v >>>= 7;
+    }
+    out.write(v);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * maps a file written by {@link #write write()} into memory.
+   * </p>
+   *
+   * @param metric is the metric used to compare strings <em>after</em>
+   *        candidates were retrieved, as for {@link NgramDict}
+   * @throws FileFormatException if the file is not an n-gram index of the
+   *         supported version, is truncated or its tables are
+   *         inconsistent, such that a lookup would read outside of them.
+   *         Since the file has no lines, the line number reported is 0.
+   * @throws IllegalArgumentException if the file was written in exact
+   *         recall mode and {@code metric} is not suitable for it
+   */
+  public static MappedNgramDict load(File file, IntMetric<String> metric)
+    throws IOException, FileFormatException
+  {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    ByteBuffer buf;
+    try {
+      FileChannel ch = raf.getChannel();
+      long size = ch.size();
+      if( size>Integer.MAX_VALUE ) {
+        throw format(file, "file larger than 2GB");
+      }
+      buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } finally {
+      raf.close();
+    }
+    if( buf.capacity()<HEADER_BYTES || buf.getInt(0)!=MAGIC ) {
+      throw format(file, "not an n-gram index file");
+    }
+    int version = buf.getInt(4);
+    if( version!=VERSION ) {
+      throw format(file, "unsupported version "+version);
+    }
+    int ngramLen = buf.getInt(8);
+    int t = buf.getInt(12);
+    int g = buf.getInt(16);
+    int c = buf.getInt(20);
+    int b = buf.getInt(24);
+    int e = buf.getInt(28);
+    long expected = HEADER_BYTES+8L*g+4L*(2L*t+1)+4L*(g+1)+2L*c+b;
+    if( ngramLen<1 || t<0 || g<0 || c<0 || b<0
+        || expected!=buf.capacity() ) {
+      throw format(file, "file size does not match header, truncated?");
+    }
+    if( e<0 ) {
+      throw format(file, "bad edit window "+e);
+    }
+    checkTables(file, buf, t, g, c, b);
+    if( e>0 ) {
+      // a metric with a wider edit span destroys more n-grams per edit
+      e = Math.max(e, NgramDict.editWindow(ngramLen, metric, true));
+    }
+    return new MappedNgramDict(metric, buf, ngramLen, e, t, g, c, b);
+  }
+  /* +***************************************************************** */
+  // reads the tables once, such that a corrupt file is reported here
+  // instead of failing during some later lookup
+  private static void checkTables(File file, ByteBuffer buf,
+                                  int t, int g, int c, int b)
+    throws FileFormatException
+  {
+    int keys = HEADER_BYTES;
+    int termStart = keys+8*g;
+    int postingStart = termStart+4*(t+1)+4*t;
+    int postings = postingStart+4*(g+1)+2*c;
+    for(int i = 1; i<g; i++) {
+      if( buf.getLong(keys+8*(i-1))>=buf.getLong(keys+8*i) ) {
+        throw format(file, "n-gram keys not sorted at "+i);
+      }
+    }
+    checkStarts(file, buf, termStart, t, c, "term");
+    checkStarts(file, buf, postingStart, g, b, "posting list");
+    for(int i = 0; i<g; i++) {
+      int pos = postings+buf.getInt(postingStart+4*i);
+      int end = postings+buf.getInt(postingStart+4*(i+1));
+      long id = 0;
+      while( pos<end ) {
+        long delta = 0;
+        int shift = 0;
+        byte v;
+        do {
+          if( pos==end || shift>28 ) {
+            throw format(file, "bad posting list "+i);
+          }
+          v = buf.get(pos++);
+          delta |= (long)(v&0x7F)<<shift;
+          shift += 7;
+        } while( v<0 );
+        id += delta;
+        if( id>=t ) {
+          throw format(file, "bad posting list "+i);
+        }
+      }
+    }
+  }
+  /* +***************************************************************** */
+  // checks that the count+1 starts at pos ascend from 0 to total
+  private static void checkStarts(File file, ByteBuffer buf, int pos,
+                                  int count, int total, String what)
+    throws FileFormatException
+  {
+    int last = 0;
+    for(int i = 0; i<=count; i++) {
+      int start = buf.getInt(pos+4*i);
+      if( start<last || start>total || (i==0 && start!=0) ) {
+        throw format(file, "bad start of "+what+" "+i);
+      }
+      last = start;
+    }
+    if( last!=total ) {
+      throw format(file, "bad start of "+what+" "+count);
+    }
+  }
+  /* +***************************************************************** */
+  private static FileFormatException format(File file, String msg) {
+    FileFormatException e = new FileFormatException(msg, 0);
+    e.setFilename(file.getPath());
+    return e;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the number of terms stored.
+   * </p>
+   */
+  public int size() {
+    return terms;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * is not supported, since a mapped dictionary is read-only.
+   * </p>
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void add(String value) {
+    throw new UnsupportedOperationException("a MappedNgramDict is "
+        +"read-only");
+  }
+  /* +***************************************************************** */
+  public List<ResultElem<String,Integer>> lookup(String queryValue,
+                                                 Integer maxDist) {
+    BestResults<String> best = new BestResults<String>();
+    lookup(queryValue, maxDist, false, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  public List<ResultElem<String,Integer>> lookupDistinct(String queryValue,
+                                                         Integer maxDist) {
+    BestResults<String> best = new BestResults<String>();
+    lookup(queryValue, maxDist, true, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * passes the terms found for {@code queryValue} to the {@code sink}, see
+   * {@link NgramDict#lookup(String,int,ResultSink) NgramDict.lookup()}.
+   * </p>
+   */
+  public void lookup(String queryValue, int maxDist,
+                     ResultSink<? super String> sink) {
+    lookup(queryValue, maxDist, false, sink);
+  }
+  /*+******************************************************************/
+  public void lookupDistinct(String queryValue, int maxDist,
+                             ResultSink<? super String> sink) {
+    lookup(queryValue, maxDist, true, sink);
+  }
+  /*+******************************************************************/
+  // the metric compares Strings, so each term compared needs one, but the
+  // characters are decoded into the thread's scratch array
+  private String term(int id, NgramDict.Scratch s) {
+    int from = termStart.get(id);
+    int l = termStart.get(id+1)-from;
+    if( s.chars.length<l ) {
+      s.chars = new char[Math.max(l, 2*s.chars.length)];
+    }
+    char[] tmp = s.chars;
+    for(int i = 0; i<l; i++) {
+      tmp[i] = termChars.get(from+i);
+    }
+    return new String(tmp, 0, l);
+  }
+  /*+******************************************************************/
+  // binary search in the sorted n-gram keys, -1 if not found
+  private int find(long key) {
+    int lo = 0;
+    int hi = ngrams-1;
+    while( lo<=hi ) {
+      int mid = (lo+hi)>>>1;
+      long k = ngramKeys.get(mid);
+      if( k<key ) {
+        lo = mid+1;
+      } else if( k>key ) {
+        hi = mid-1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+  /*+******************************************************************/
+  // counts one shared n-gram for each term in the posting list of n-gram
+  // g whose length is in [minLen, maxLen]
+  private void decodePostings(int g, long minLen, long maxLen,
+                              NgramDict.Scratch s) {
+    int pos = postingStart.get(g);
+    int end = postingStart.get(g+1);
+    int id = 0;
+    while( pos<end ) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = postings.get(pos++);
+        delta |= (b&0x7F)<<shift;
+        shift += 7;
+      } while( b<0 );
+      id += delta;
+      int len = termStart.get(id+1)-termStart.get(id);
+      if( len>=minLen && len<=maxLen ) {
+        s.count(id);
+      }
+    }
+  }
+  /*+******************************************************************/
+  private void lookup(String queryValue, int maxDist, boolean distinct,
+                      ResultSink<? super String> sink) {
+    NgramDict.Scratch s = scratch.acquire();
+    try {
+      lookup(queryValue, maxDist, distinct, sink, s);
+    } finally {
+      s.release();
+    }
+  }
+  /*+******************************************************************/
+  // the same candidate retrieval and curation as in NgramDict. The
+  // postings are not split by length, instead the term length is read from
+  // the term table.
+  private void lookup(String queryValue, int maxDist, boolean distinct,
+                      ResultSink<? super String> sink, NgramDict.Scratch s) {
+    int minNgramDist = editWindow>0
+        ? exactCandidates(queryValue, maxDist, distinct, s)
+        : similarCandidates(queryValue, maxDist, distinct, s);
+
+    int limit = maxDist;
+    QueryScorer<String> scorer = metric.prepare(queryValue);
+    for(int i = 0, l = s.ids.size(); i<l && limit>=0; i++) {
+      if( !NgramDict.eligible(s.dists.get(i), minNgramDist,
+                              ngramLen) ) {
+        continue;
+      }
+      String value = term(s.ids.get(i), s);
+      int d = scorer.d(value, limit);
+      if( d>limit ) {
+        continue;
+      }
+      limit = Math.min(limit, sink.found(value, d));
+    }
+  }
+  /*+******************************************************************/
+  // leaves the candidates with their n-gram distances in s and returns
+  // the n-gram distance against which they must be eligible
+  private int similarCandidates(String queryValue, int maxDist,
+                                boolean distinct, NgramDict.Scratch s) {
+    int queryNgrams = s.query.compute(queryValue);
+    s.reset(terms);
+    long minLen = Long.MIN_VALUE;
+    long maxLen = Long.MAX_VALUE;
+    if( lengthBounded ) {
+      minLen = (long)queryValue.length()-maxDist;
+      maxLen = (long)queryValue.length()+maxDist;
+    }
+
+    for(int i = 0; i<queryNgrams; i++) {
+      int g = find(s.query.key(i));
+      if( g>=0 ) {
+        decodePostings(g, minLen, maxLen, s);
+      }
+    }
+
+    int minDistSeen = Integer.MAX_VALUE;
+    for(int i = 0, l = s.touched.size(); i<l; i++) {
+      int id = s.touched.get(i);
+      int symDist = queryNgrams+termNgrams.get(id)-2*s.countOf(id);
+      if( distinct && symDist==0 && term(id, s).equals(queryValue) ) {
+        continue;
+      }
+      if( !NgramDict.eligible(symDist, minDistSeen, ngramLen) ) {
+        continue;
+      }
+      if( symDist<minDistSeen ) {
+        minDistSeen = symDist;
+      }
+      s.ids.push(id);
+      s.dists.push(symDist);
+    }
+    return minDistSeen;
+  }
+  /*+******************************************************************/
+  // leaves the candidates for exact recall in s, as NgramDict does, and
+  // returns Integer.MAX_VALUE, against which all are eligible. Terms of
+  // lengths for which a match need not share any n-gram with the query
+  // are taken from a scan of the term table.
+  private int exactCandidates(String queryValue, int maxDist,
+                              boolean distinct, NgramDict.Scratch s) {
+    int queryNgrams = s.query.compute(queryValue);
+    s.reset(terms);
+    long lost = (long)maxDist*editWindow;
+    int pad = (ngramLen+1)/2;
+    long minLen = (long)queryValue.length()-maxDist;
+    long maxLen = (long)queryValue.length()+maxDist;
+    // a term of length len has at most len+2*pad-ngramLen+1 n-grams, so
+    // up to this length all n-grams of a match may be destroyed
+    long scanLen = queryNgrams>lost ? -1 : lost-2*pad+ngramLen-1;
+
+    if( scanLen>=minLen ) {
+      for(int id = 0; id<terms; id++) {
+        int len = termStart.get(id+1)-termStart.get(id);
+        if( len<minLen || len>scanLen || len>maxLen ) {
+          continue;
+        }
+        if( !(distinct && term(id, s).equals(queryValue)) ) {
+          s.ids.push(id);
+          s.dists.push(0);
+        }
+      }
+    }
+    for(int i = 0; i<queryNgrams; i++) {
+      int g = find(s.query.key(i));
+      if( g>=0 ) {
+        decodePostings(g, Math.max(minLen, scanLen+1), maxLen, s);
+      }
+    }
+
+    for(int i = 0, l = s.touched.size(); i<l; i++) {
+      int id = s.touched.get(i);
+      int shared = s.countOf(id);
+      int ngrams = termNgrams.get(id);
+      if( shared<Math.max(queryNgrams, ngrams)-lost ) {
+        continue;
+      }
+      if( distinct && shared==queryNgrams && shared==ngrams
+          && term(id, s).equals(queryValue) ) {
+        continue;
+      }
+      s.ids.push(id);
+      s.dists.push(0);
+    }
+    return Integer.MAX_VALUE;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the {@code k} terms closest to {@code queryValue}, like
+   * {@link NgramDict#nearest NgramDict.nearest()}. In exact recall mode,
+   * the terms sharing no n-gram with the query are found by a scan of the
+   * term table.
+   * </p>
+   */
+  public List<ResultElem<String,Integer>> nearest(String queryValue,
+                                                  int k) {
+    KNearest<String> heap = new KNearest<String>(k);
+    if( k==0 ) {
+      return heap.toList();
+    }
+    NgramDict.Scratch s = scratch.acquire();
+    try {
+      nearest(queryValue, heap, s);
+    } finally {
+      s.release();
+    }
+    return heap.toList();
+  }
+  /* +***************************************************************** */
+  private void nearest(String queryValue, KNearest<String> heap,
+                       NgramDict.Scratch s) {
+    int queryNgrams = s.query.compute(queryValue);
+    s.reset(terms);
+    for(int i = 0; i<queryNgrams; i++) {
+      int g = find(s.query.key(i));
+      if( g>=0 ) {
+        decodePostings(g, Long.MIN_VALUE, Long.MAX_VALUE, s);
+      }
+    }
+    for(int i = 0, l = s.touched.size(); i<l; i++) {
+      int id = s.touched.get(i);
+      s.ids.push(id);
+      s.dists.push(queryNgrams+termNgrams.get(id)-2*s.countOf(id));
+    }
+    s.sortByDist();
+
+    QueryScorer<String> scorer = metric.prepare(queryValue);
+    int qlen = queryValue.length();
+    for(int i = 0, l = s.ids.size(); i<l; i++) {
+      int id = s.ids.get(i);
+      if( !beyond(qlen, queryNgrams, id, s.countOf(id), heap.bound()) ) {
+        String value = term(id, s);
+        heap.offer(value, scorer.d(value, heap.radius()));
+      }
+    }
+    if( editWindow==0 ) {
+      return;
+    }
+    for(int id = 0; id<terms; id++) {
+      if( !s.isTouched(id)
+          && !beyond(qlen, queryNgrams, id, 0, heap.bound()) ) {
+        String value = term(id, s);
+        heap.offer(value, scorer.d(value, heap.radius()));
+      }
+    }
+  }
+  /* +***************************************************************** */
+  // tells whether the term id sharing that many n-grams with the query
+  // certainly has a distance of at least bound, as in NgramDict
+  private boolean beyond(int qlen, int queryNgrams, int id, int shared,
+                         int bound) {
+    int len = termStart.get(id+1)-termStart.get(id);
+    if( lengthBounded && Math.abs(len-qlen)>=bound ) {
+      return true;
+    }
+    if( editWindow>0 ) {
+      long lost = Math.max(queryNgrams, termNgrams.get(id))-shared;
+      return (lost+editWindow-1)/editWindow>=bound;
+    }
+    return false;
+  }
+}
@@ -13,15 +13,14 @@
 // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
 package approdictio.dict;
 
-import static approdictio.dict.Util.newResultElem;
-import static approdictio.dict.Util.newResultList;
-
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * <p>
@@ -31,11 +30,13 @@ import java.util.Set;
  * <p>
  * <b>Background:</b> When a term is added to the dictionary, all its
  * overlapping n-grams are computed. A map is prepared that maps n-grams to
- * the terms in which they occur. When looking up a term, the term's n-grams
- * are again computed and used to retrieve candidate terms. Candidate terms
- * have at least one n-gram in common with the query term. Further the list
- * of candidates is trimmed by parameter {@code maxDist}. The ngram-metric
- * used is
+ * the terms in which they occur. Internally n-grams are {@code long} keys
+ * and terms are identified by {@code int} ids, so that neither needs an
+ * object per entry. When looking up a term, the term's n-grams are again
+ * computed and used to retrieve candidate terms. Candidate terms have at
+ * least one n-gram in common with the query term. Further the list of
+ * candidates is trimmed by parameter {@code maxDist}. The ngram-metric used
+ * is
  * </p>
  * <blockquote>
  * |union(P,Q)| - |intersection(P,Q)| = |union(P,Q) \ intersection(P,Q)|
@@ -43,22 +44,38 @@ import java.util.Set;
  * <p>
  * for n-gram sets P and Q, which is indeed a metric.
  * </p>
+ * <p>
+ * Lookups may run concurrently, but not while terms are added. Use a
+ * {@link ConcurrentNgramDict} to add terms while serving lookups.
+ * </p>
  * 
  * @see <a
  *      href="http://en.wikipedia.org/wiki/Symmetric_difference#Symmetric_difference_on_measure_spaces">Wikipedia
  *      Symmetric Difference</a>
  */
 public class NgramDict
-    implements Dictionary<String,Integer>
+    implements BudgetedDictionary<String>
 {
-  private static final char NOCHAR = '\u00B7';
-
   private final int ngramLen;
   private final IntMetric<String> metric;
 
-  // an index mapping ngrams to their strings.
-  private final Map<String,Set<String>> index =
-      new HashMap<String,Set<String>>();
+  // per term length, an index mapping n-gram keys to the ids of the terms
+  // containing them
+  private PostingMap[] byLength = new PostingMap[0];
+  private final boolean lengthBounded;
+
+  // for exact recall, the number of n-grams one edit can destroy and the
+  // term ids per length, otherwise 0 and null
+  private final int editWindow;
+  private IntStack[] idsByLength;
+
+  // the terms by id, their number of distinct n-grams and the ids by term
+  private String[] terms = new String[16];
+  private int[] termNgrams = new int[16];
+  private int termCount = 0;
+  private final Map<String,Integer> termIds = new HashMap<String,Integer>();
+
+  private final Scratches scratch;
   /* +***************************************************************** */
   /**
    * <p>
@@ -72,114 +89,669 @@ public class NgramDict
    *         zero.
    */
   public NgramDict(int ngramLen, IntMetric<String> metric) {
+    this(ngramLen, metric, false);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * creates a dictionary that uses n-grams with {@code ngramLen} characters
+   * and optionally guarantees to find all matches.
+   * </p>
+   * <p>
+   * In <b>exact recall</b> mode, the n-gram distance heuristic is not used.
+   * Instead, by the q-gram lemma, a term within distance {@code k} of the
+   * query must share at least
+   * </p>
+   * <blockquote>
+   * max(|P|,|Q|) - k*(n+s-1)
+   * </blockquote>
+   * <p>
+   * of its n-grams with the query, where P and Q are the n-gram sets, n is
+   * {@code ngramLen} and s is the {@link EditCountMetric#editSpan edit
+   * span} of the metric. Only terms sharing that many n-grams are compared
+   * with the metric. For term lengths where the bound is not positive, all
+   * terms of that length are compared, so short queries with a large
+   * {@code maxDist} approach a scan of the dictionary.
+   * </p>
+   * 
+   * @param exactRecall requests exact recall mode, which requires an
+   *        {@link EditCountMetric} with a positive edit span
+   * @throws IllegalArgumentException if {@code ngramLen} is not greater
+   *         zero or if exact recall is requested with an unsuitable
+   *         metric.
+   */
+  public NgramDict(int ngramLen, IntMetric<String> metric,
+                   boolean exactRecall) {
+    this(ngramLen, metric, editWindow(ngramLen, metric, exactRecall));
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * creates a dictionary with an edit window as returned by
+   * {@link #editWindow editWindow()}, without checking the parameters
+   * again.
+   * </p>
+   */
+  NgramDict(int ngramLen, IntMetric<String> metric, int editWindow) {
+    this.ngramLen = ngramLen;
+    this.metric = metric;
+    this.lengthBounded = metric instanceof LengthBoundedMetric;
+    this.scratch = new Scratches(ngramLen);
+    this.editWindow = editWindow;
+    if( editWindow>0 ) {
+      this.idsByLength = new IntStack[0];
+    }
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * checks the parameters of {@link #NgramDict(int,IntMetric,boolean)}
+   * and returns the number of n-grams one edit can destroy in exact recall
+   * mode, otherwise 0.
+   * </p>
+   * 
+   * @throws IllegalArgumentException as described for the constructor
+   */
+  static int editWindow(int ngramLen, IntMetric<String> metric,
+                        boolean exactRecall) {
     if( ngramLen<1 ) {
       throw new IllegalArgumentException("n must be greater zero "
           +" but is "+ngramLen);
     }
-    this.ngramLen = ngramLen;
-    this.metric = metric;
+    if( !exactRecall ) {
+      return 0;
+    }
+    int span = metric instanceof EditCountMetric
+        ? ((EditCountMetric)metric).editSpan() : 0;
+    if( span<1 ) {
+      throw new IllegalArgumentException("exact recall requires an "
+          +EditCountMetric.class.getName()+" with positive edit span");
+    }
+    return ngramLen+span-1;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * creates a compact copy of {@code other} for lookups only. Arrays and
+   * posting lists are trimmed to size and the term ids by term, which only
+   * {@link #add add()} needs, are not copied.
+   * </p>
+   */
+  private NgramDict(NgramDict other) {
+    this.ngramLen = other.ngramLen;
+    this.metric = other.metric;
+    this.lengthBounded = other.lengthBounded;
+    this.scratch = new Scratches(ngramLen);
+    this.editWindow = other.editWindow;
+    byLength = new PostingMap[other.byLength.length];
+    for(int len = 0; len<byLength.length; len++) {
+      if( other.byLength[len]!=null ) {
+        byLength[len] = other.byLength[len].trimmed();
+      }
+    }
+    if( other.idsByLength!=null ) {
+      idsByLength = new IntStack[other.idsByLength.length];
+      for(int len = 0; len<idsByLength.length; len++) {
+        IntStack ids = other.idsByLength[len];
+        if( ids==null ) {
+          continue;
+        }
+        idsByLength[len] = new IntStack(ids.size());
+        for(int i = 0, l = ids.size(); i<l; i++) {
+          idsByLength[len].push(ids.get(i));
+        }
+      }
+    }
+    termCount = other.termCount;
+    terms = Arrays.copyOf(other.terms, termCount);
+    termNgrams = Arrays.copyOf(other.termNgrams, termCount);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * creates an immutable, compact copy of this dictionary which finds the
+   * same values. Values added to this dictionary later are not seen by the
+   * copy.
+   * </p>
+   */
+  public FrozenNgramDict freeze() {
+    return new FrozenNgramDict(new NgramDict(this));
+  }
+  /* +***************************************************************** */
+  int getNgramLen() {
+    return ngramLen;
+  }
+  /* +***************************************************************** */
+  /** the number of n-grams one edit can destroy, 0 without exact recall */
+  int getEditWindow() {
+    return editWindow;
+  }
+  /* +***************************************************************** */
+  boolean contains(String value) {
+    return termIds.containsKey(value);
+  }
+  /* +***************************************************************** */
+  int getTermCount() {
+    return termCount;
+  }
+  /* +***************************************************************** */
+  String getTerm(int id) {
+    return terms[id];
+  }
+  /* +***************************************************************** */
+  int getTermNgrams(int id) {
+    return termNgrams[id];
   }
   /* +***************************************************************** */
   public void add(String value) {
+    Scratch s = scratch.acquire();
+    try {
+      add(value, s.query);
+    } finally {
+      s.release();
+    }
+  }
+  /* +***************************************************************** */
+  /** adds {@code value}, computing its n-grams with {@code keys} */
+  void add(String value, NgramKeys keys) {
+    int id = register(value);
+    if( id<0 ) {
+      return;
+    }
+    int n = keys.compute(value);
+    termNgrams[id] = n;
+    PostingMap index = byLength[value.length()];
+    for(int i = 0; i<n; i++) {
+      index.add(keys.key(i), id);
+    }
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * creates a dictionary with the terms of {@code first} followed by those
+   * of {@code second}, which must have the same parameters and no term in
+   * common. The posting lists are concatenated, with the ids of
+   * {@code second} shifted behind those of {@code first}, so no n-grams
+   * are computed again.
+   * </p>
+   */
+  static NgramDict merge(NgramDict first, NgramDict second) {
+    NgramDict m =
+        new NgramDict(first.ngramLen, first.metric, first.editWindow);
+    int offset = first.termCount;
+    int count = offset+second.termCount;
+    m.terms = Arrays.copyOf(first.terms, count);
+    m.termNgrams = Arrays.copyOf(first.termNgrams, count);
+    System.arraycopy(second.terms, 0, m.terms, offset, second.termCount);
+    System.arraycopy(second.termNgrams, 0, m.termNgrams, offset,
+                     second.termCount);
+    m.termCount = count;
+    for(int id = 0; id<count; id++) {
+      m.termIds.put(m.terms[id], id);
+    }
 
-    for(String ngram : ngrams(value)) {
-      Set<String> values = index.get(ngram);
-      if( values==null ) {
-        values = new HashSet<String>();
-        index.put(ngram, values);
+    int lengths = Math.max(first.byLength.length, second.byLength.length);
+    m.byLength = new PostingMap[lengths];
+    for(int len = 0; len<lengths; len++) {
+      PostingMap a = len<first.byLength.length ? first.byLength[len] : null;
+      PostingMap b =
+          len<second.byLength.length ? second.byLength[len] : null;
+      if( a==null && b==null ) {
+        continue;
+      }
+      m.byLength[len] = new PostingMap();
+      if( a!=null ) {
+        m.byLength[len].appendAll(a, 0);
+      }
+      if( b!=null ) {
+        m.byLength[len].appendAll(b, offset);
+      }
+    }
+    if( m.idsByLength!=null ) {
+      m.idsByLength = new IntStack[lengths];
+      for(int len = 0; len<lengths; len++) {
+        IntStack a =
+            len<first.idsByLength.length ? first.idsByLength[len] : null;
+        IntStack b =
+            len<second.idsByLength.length ? second.idsByLength[len] : null;
+        if( a==null && b==null ) {
+          continue;
+        }
+        IntStack ids = new IntStack(4);
+        for(int i = 0, l = a==null ? 0 : a.size(); i<l; i++) {
+          ids.push(a.get(i));
+        }
+        for(int i = 0, l = b==null ? 0 : b.size(); i<l; i++) {
+          ids.push(b.get(i)+offset);
+        }
+        m.idsByLength[len] = ids;
       }
-      values.add(value);
     }
+    return m;
   }
   /* +***************************************************************** */
-  private Set<String> ngrams(String s) {
-    char[] padded = padWithNoChar(s);
-    int numNgrams = padded.length-ngramLen+1;
-
-    Set<String> result = new HashSet<String>(numNgrams);
+  /**
+   * <p>
+   * assigns the next id to {@code value} and prepares the tables for it,
+   * except for its n-grams. Returns -1 if the value is already stored.
+   * </p>
+   */
+  private int register(String value) {
+    if( termIds.containsKey(value) ) {
+      return -1;
+    }
+    int id = termCount;
+    if( id==terms.length ) {
+      terms = Arrays.copyOf(terms, 2*id);
+      termNgrams = Arrays.copyOf(termNgrams, 2*id);
+    }
+    terms[id] = value;
+    termIds.put(value, id);
+    termCount += 1;
 
-    for(int i = 0; i<numNgrams; i++) {
-      result.add(new String(padded, i, ngramLen));
+    int len = value.length();
+    if( len>=byLength.length ) {
+      byLength = Arrays.copyOf(byLength, len+1);
+    }
+    if( byLength[len]==null ) {
+      byLength[len] = new PostingMap();
     }
-    return result;
+    if( idsByLength!=null ) {
+      if( len>=idsByLength.length ) {
+        idsByLength = Arrays.copyOf(idsByLength, len+1);
+      }
+      if( idsByLength[len]==null ) {
+        idsByLength[len] = new IntStack(4);
+      }
+      idsByLength[len].push(id);
+    }
+    return id;
   }
   /* +***************************************************************** */
-  private char[] padWithNoChar(String s) {
-    int halfNgramRoundedUp = (ngramLen+1)/2;
-    char[] result = new char[s.length()+2*halfNgramRoundedUp];
-    Arrays.fill(result, NOCHAR);
-    s.getChars(0, s.length(), result, halfNgramRoundedUp);
-    return result;
+  /**
+   * <p>
+   * adds all values in the order of the collection's iterator with the
+   * {@link ForkJoinPool#commonPool common pool}, see
+   * {@link #addAll(Collection,ForkJoinPool)}.
+   * </p>
+   */
+  public void addAll(Collection<? extends String> values) {
+    addAll(values, ForkJoinPool.commonPool());
   }
   /* +***************************************************************** */
   /**
    * <p>
-   * looks up elements in the dictionary according to ngram metric. Ngram
-   * metric for terms p and q is computed based on their respective ngram
-   * sets P and Q as |union(P,Q)|-|intersection(P,Q)|.
+   * adds all values in the order of the collection's iterator, using the
+   * threads of {@code pool}. The result is the same as if the values were
+   * {@link #add add}ed one by one. Ids are assigned up front, then the new
+   * terms are split into shards of consecutive ids and each shard computes
+   * its n-grams into partial posting lists of its own. Finally, the
+   * partial lists are appended shard by shard to the dictionary's posting
+   * lists, in parallel for different term lengths, which keeps all ids
+   * ascending.
+   * </p>
+   * <p>
+   * The dictionary must not be used otherwise while this method runs.
    * </p>
    */
-  private List<ResultElem<String,Integer>> getNgramSimilar(
-                                                           String queryValue,
-                                                           boolean distinct)
-  {
-
-    List<ResultElem<String,Integer>> result = newResultList();
-
-    Set<String> queryNgrams = ngrams(queryValue);
-
-    Set<String> termsSeen = new HashSet<String>();
-    int minDistSeen = Integer.MAX_VALUE;
+  public void addAll(Collection<? extends String> values,
+                     ForkJoinPool pool) {
+    int first = termCount;
+    for(String value : values) {
+      register(value);
+    }
+    if( termCount>first ) {
+      pool.invoke(new BulkIndex(first, termCount, pool.getParallelism()));
+    }
+  }
+  /* +***************************************************************** */
+  private final class BulkIndex extends RecursiveAction {
+    private static final int MIN_SHARD = 4096;
+    private final int from;
+    private final int to;
+    private final int parallelism;
 
-    // for each n-gram of the queryValue fetch the terms that also contain
-    // that value
-    for(String ngram : queryNgrams) {
-      Set<String> terms = index.get(ngram);
-      if( terms==null ) {
-        continue;
+    BulkIndex(int from, int to, int parallelism) {
+      this.from = from;
+      this.to = to;
+      this.parallelism = parallelism;
+    }
+    @Override
+    protected void compute() {
+      // a few shards per thread even out differences in term length
+      int shardCount = Math.max(1, Math.min(4*parallelism,
+                                            (to-from)/MIN_SHARD));
+      final Shard[] shards = new Shard[shardCount];
+      for(int i = 0; i<shardCount; i++) {
+        long lo = from+(long)(to-from)*i/shardCount;
+        long hi = from+(long)(to-from)*(i+1)/shardCount;
+        shards[i] = new Shard((int)lo, (int)hi);
       }
+      invokeAll(shards);
 
-      for(String termFound : terms) {
-        if( (distinct && termFound.equals(queryValue)) 
-            || termsSeen.contains(termFound) ) {
+      List<RecursiveAction> merges = new ArrayList<RecursiveAction>();
+      for(int len = 0; len<byLength.length; len++) {
+        if( byLength[len]==null ) {
           continue;
         }
-        termsSeen.add(termFound);
+        final int l = len;
+        merges.add(new RecursiveAction() {
+          @Override
+          protected void compute() {
+            for(Shard shard : shards) {
+              shard.appendTo(byLength[l], l);
+            }
+          }
+        });
+      }
+      invokeAll(merges);
+    }
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * indexes the terms with ids in {@code [from, to)} into posting lists of
+   * its own.
+   * </p>
+   */
+  private final class Shard extends RecursiveAction {
+    private final int from;
+    private final int to;
+    private PostingMap[] partial = new PostingMap[0];
+
+    Shard(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+    @Override
+    protected void compute() {
+      NgramKeys keys = new NgramKeys(ngramLen);
+      for(int id = from; id<to; id++) {
+        String value = terms[id];
+        int n = keys.compute(value);
+        termNgrams[id] = n;
+        int len = value.length();
+        if( len>=partial.length ) {
+          partial = Arrays.copyOf(partial, len+1);
+        }
+        if( partial[len]==null ) {
+          partial[len] = new PostingMap();
+        }
+        for(int i = 0; i<n; i++) {
+          partial[len].add(keys.key(i), id);
+        }
+      }
+    }
+    void appendTo(PostingMap index, int len) {
+      if( len>=partial.length || partial[len]==null ) {
+        return;
+      }
+      index.appendAll(partial[len], 0);
+    }
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * hands out the per thread scratch data of lookups. If a sink or metric
+   * called by a lookup looks up in the same dictionary again, the thread's
+   * scratch data is still in use and the nested lookup gets fresh data.
+   * </p>
+   */
+  static final class Scratches extends ThreadLocal<Scratch> {
+    private final int ngramLen;
+    Scratches(int ngramLen) {
+      this.ngramLen = ngramLen;
+    }
+    @Override
+    protected Scratch initialValue() {
+      return new Scratch(ngramLen);
+    }
+    /** returns scratch data to be given back with {@link Scratch#release} */
+    Scratch acquire() {
+      Scratch s = get();
+      if( s.inUse ) {
+        s = new Scratch(ngramLen);
+      }
+      s.inUse = true;
+      return s;
+    }
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * holds the per thread scratch data of a lookup.
+   * </p>
+   */
+  static final class Scratch {
+    final NgramKeys query;
+    // terms sharing at least one n-gram with the query
+    final IntStack touched = new IntStack();
+    // candidates kept and their n-gram distances
+    final IntStack ids = new IntStack();
+    final IntStack dists = new IntStack();
+    // number of n-grams shared with the query per term id, valid only
+    // where the stamp is current
+    private int[] counts = new int[0];
+    private int[] stamps = new int[0];
+    private int stamp = 0;
+    // for sorting candidates by n-gram distance
+    private long[] packed = new long[0];
+    // set while a lookup works with this object, see Scratches
+    private boolean inUse = false;
+    // candidates gathered from several dictionaries, see
+    // ConcurrentNgramDict, and their n-gram distances
+    final List<String> terms = new ArrayList<String>();
+    final IntStack termDists = new IntStack();
+    // for decoding terms of a MappedNgramDict
+    char[] chars = new char[16];
 
-        int symDist = symmetricDistance(queryNgrams, ngrams(termFound));
+    Scratch(int ngramLen) {
+      query = new NgramKeys(ngramLen);
+    }
+    void reset(int terms) {
+      touched.clear();
+      ids.clear();
+      dists.clear();
+      if( stamps.length<terms ) {
+        int l = Math.max(terms, 2*stamps.length);
+        stamps = new int[l];
+        counts = new int[l];
+        stamp = 0;
+      }
+      stamp += 1;
+      if( stamp==0 ) {
+        Arrays.fill(stamps, 0);
+        stamp = 1;
+      }
+    }
+    /** counts one more shared n-gram for term {@code id} */
+    void count(int id) {
+      if( stamps[id]==stamp ) {
+        counts[id] += 1;
+      } else {
+        stamps[id] = stamp;
+        counts[id] = 1;
+        touched.push(id);
+      }
+    }
+    int countOf(int id) {
+      return counts[id];
+    }
+    void release() {
+      inUse = false;
+    }
+    /** tells whether term {@code id} was counted since the last reset */
+    boolean isTouched(int id) {
+      return stamps[id]==stamp;
+    }
+    /**
+     * sorts the candidates by ascending n-gram distance, those with equal
+     * distance by id.
+     */
+    void sortByDist() {
+      int n = ids.size();
+      if( packed.length<n ) {
+        packed = new long[Math.max(n, 2*packed.length)];
+      }
+      for(int i = 0; i<n; i++) {
+        packed[i] = ((long)dists.get(i)<<32)|ids.get(i);
+      }
+      Arrays.sort(packed, 0, n);
+      ids.clear();
+      dists.clear();
+      for(int i = 0; i<n; i++) {
+        ids.push((int)packed[i]);
+        dists.push((int)(packed[i]>>>32));
+      }
+    }
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * collects the candidates for exact recall into {@code s}, as described
+   * for {@link #NgramDict(int,IntMetric,boolean)}. Their n-gram distances
+   * are not needed and left at 0.
+   * </p>
+   */
+  private void getExactCandidates(String queryValue, int maxDist,
+                                  boolean distinct, Scratch s)
+  {
+    int queryNgrams = s.query.compute(queryValue);
+    s.reset(termCount);
+    long lost = (long)maxDist*editWindow;
+    int pad = (ngramLen+1)/2;
 
-        // drop bad candidates as early as possible
-        if( !eligible(symDist, minDistSeen) ) {
+    PostingMap[] buckets = byLength;
+    int minLen = (int)Math.max(0L, (long)queryValue.length()-maxDist);
+    int maxLen = (int)Math.min(buckets.length-1,
+                               (long)queryValue.length()+maxDist);
+    for(int len = minLen; len<=maxLen; len++) {
+      PostingMap index = buckets[len];
+      if( index==null ) {
+        continue;
+      }
+      // terms of this length have at most that many distinct n-grams
+      int maxTermNgrams = len+2*pad-ngramLen+1;
+      if( Math.max(queryNgrams, maxTermNgrams)<=lost ) {
+        // a match need not share any n-gram, check them all
+        IntStack ids = idsByLength[len];
+        for(int i = 0, l = ids.size(); i<l; i++) {
+          int id = ids.get(i);
+          if( !(distinct && terms[id].equals(queryValue)) ) {
+            s.ids.push(id);
+            s.dists.push(0);
+          }
+        }
+        continue;
+      }
+      for(int i = 0; i<queryNgrams; i++) {
+        int slot = index.slot(s.query.key(i));
+        if( slot<0 ) {
           continue;
         }
-
-        if( symDist<minDistSeen ) {
-          minDistSeen = symDist;
+        int[] list = index.list(slot);
+        for(int j = 0, l = index.listSize(slot); j<l; j++) {
+          s.count(list[j]);
         }
-        result.add(newResultElem(termFound, symDist));
       }
     }
-    result = filterEligible(result, minDistSeen);
 
-    return result;
+    for(int i = 0, l = s.touched.size(); i<l; i++) {
+      int id = s.touched.get(i);
+      int shared = s.countOf(id);
+      if( shared<Math.max(queryNgrams, termNgrams[id])-lost ) {
+        continue;
+      }
+      if( distinct && shared==queryNgrams && shared==termNgrams[id]
+          && terms[id].equals(queryValue) ) {
+        continue;
+      }
+      s.ids.push(id);
+      s.dists.push(0);
+    }
   }
   /* +***************************************************************** */
-  private List<ResultElem<String,Integer>> filterEligible(
-                                                          List<ResultElem<String,Integer>> candidates,
-                                                          int minDistSeen)
+  /**
+   * <p>
+   * looks up elements in the dictionary according to ngram metric. Ngram
+   * metric for terms p and q is computed based on their respective ngram
+   * sets P and Q as |union(P,Q)|-|intersection(P,Q)|, which is
+   * |P|+|Q|-2|intersection(P,Q)|.
+   * </p>
+   * <p>
+   * The size of the intersection is the number of posting lists of the
+   * query's n-grams a term appears in. It is counted by scanning these
+   * lists once (ScanCount), so candidate terms are never looked at. The
+   * candidates are left in {@code s}, the smallest n-gram distance seen is
+   * returned.
+   * </p>
+   * <p>
+   * Postings are kept separately per term length. For a
+   * {@link LengthBoundedMetric}, only the lengths within {@code maxDist} of
+   * the query length are scanned.
+   * </p>
+   */
+  private int getNgramSimilar(String queryValue, int maxDist,
+                              boolean distinct, Scratch s)
   {
-    List<ResultElem<String,Integer>> result =
-        newResultList(candidates.size());
+    int queryNgrams = s.query.compute(queryValue);
+    s.reset(termCount);
+
+    PostingMap[] buckets = byLength;
+    int minLen = 0;
+    int maxLen = buckets.length-1;
+    if( lengthBounded ) {
+      minLen = (int)Math.max(0L, (long)queryValue.length()-maxDist);
+      maxLen = (int)Math.min(maxLen, (long)queryValue.length()+maxDist);
+    }
+    for(int len = minLen; len<=maxLen; len++) {
+      PostingMap index = buckets[len];
+      if( index==null ) {
+        continue;
+      }
+      for(int i = 0; i<queryNgrams; i++) {
+        int slot = index.slot(s.query.key(i));
+        if( slot<0 ) {
+          continue;
+        }
+        int[] list = index.list(slot);
+        for(int j = 0, l = index.listSize(slot); j<l; j++) {
+          s.count(list[j]);
+        }
+      }
+    }
+
+    int minDistSeen = Integer.MAX_VALUE;
+    for(int i = 0, l = s.touched.size(); i<l; i++) {
+      int id = s.touched.get(i);
+      int symDist = queryNgrams+termNgrams[id]-2*s.countOf(id);
+      // only a term with the same n-grams can be equal to the query
+      if( distinct && symDist==0 && terms[id].equals(queryValue) ) {
+        continue;
+      }
 
-    for(ResultElem<String,Integer> cand : candidates) {
-      if( eligible(cand.d, minDistSeen) ) {
-        result.add(cand);
+      // drop bad candidates as early as possible
+      if( !eligible(symDist, minDistSeen, ngramLen) ) {
+        continue;
       }
+      if( symDist<minDistSeen ) {
+        minDistSeen = symDist;
+      }
+      s.ids.push(id);
+      s.dists.push(symDist);
     }
-    return result;
+    return minDistSeen;
   }
   /* +***************************************************************** */
-  private boolean eligible(int candidateDistance, int bestDistance) {
+  /**
+   * <p>
+   * tells whether a term with n-gram distance {@code candidateDistance} to
+   * the query is still worth comparing with the metric, given the best
+   * n-gram distance seen. The rule is shared by all n-gram dictionaries.
+   * </p>
+   */
+  static boolean eligible(int candidateDistance, int bestDistance,
+                          int ngramLen) {
     // TODO: can this be optimized to use a smaller margin than ngramLen? No,
     // it is not obvious why ngramLen is a good choice, but it works.
 
@@ -188,14 +760,6 @@ public class NgramDict
     return candidateDistance-ngramLen<=bestDistance;
   }
   /* +***************************************************************** */
-  private int symmetricDistance(Set<?> precious, Set<?> scratch) {
-    Set<Object> union = new HashSet<Object>(precious.size()+scratch.size());
-    union.addAll(precious);
-    union.addAll(scratch);
-    scratch.retainAll(precious);
-    return union.size()-scratch.size();
-  }
-  /* +***************************************************************** */
   /**
    * @throws ConcurrentModificationException may be thrown in cases where the
    *         dictionary is updated while a lookup tries to find a query
@@ -203,7 +767,7 @@ public class NgramDict
    */
   public List<ResultElem<String,Integer>> lookup(String queryValue,
                                                  Integer maxDist) {
-    return lookup(queryValue, maxDist, false);
+    return lookup(queryValue, maxDist, false, null);
   }
   /*+******************************************************************/
   /**
@@ -213,80 +777,228 @@ public class NgramDict
    */
   public List<ResultElem<String,Integer>> lookupDistinct(String queryValue,
                                                          Integer maxDist) {
-    return lookup(queryValue, maxDist, true);
+    return lookup(queryValue, maxDist, true, null);
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * like {@link #lookup(String,Integer) lookup()}, but compares no more
+   * candidates with the query than the {@code budget} allows.
+   * </p>
+   */
+  public List<ResultElem<String,Integer>> lookup(String queryValue,
+                                                 Integer maxDist,
+                                                 LookupBudget budget) {
+    return lookup(queryValue, maxDist, false, budget);
+  }
+  /*+******************************************************************/
+  public List<ResultElem<String,Integer>> lookupDistinct(String queryValue,
+                                                         Integer maxDist,
+                                                         LookupBudget budget) {
+    return lookup(queryValue, maxDist, true, budget);
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * passes the terms found for {@code queryValue} to the {@code sink} as
+   * soon as they are compared with the query, without collecting them in a
+   * list. The distance returned by the sink lowers {@code maxDist} for the
+   * candidates still to compare. The candidates are those of
+   * {@link #lookup(String,Integer) lookup()}, so without exact recall a
+   * sink may not see every term within {@code maxDist}.
+   * </p>
+   *
+   * @throws ConcurrentModificationException may be thrown in cases where the
+   *         dictionary is updated while a lookup tries to find a query
+   *         value.
+   */
+  public void lookup(String queryValue, int maxDist,
+                     ResultSink<? super String> sink) {
+    lookup(queryValue, maxDist, false, null, sink);
+  }
+  /*+******************************************************************/
+  public void lookupDistinct(String queryValue, int maxDist,
+                             ResultSink<? super String> sink) {
+    lookup(queryValue, maxDist, true, null, sink);
   }
   /*+******************************************************************/
   private List<ResultElem<String,Integer>> lookup(String queryValue,
                                                   int maxDist,
-                                                  boolean distinct)
-    {
-    List<ResultElem<String,Integer>> tmp =
-        getNgramSimilar(queryValue, distinct);
-    List<ResultElem<String,Integer>> result = newResultList();
-    for(ResultElem<String,Integer> re : curate(queryValue, maxDist, tmp)) {
-      result.add(re);
+                                                  boolean distinct,
+                                                  LookupBudget budget)
+  {
+    BestResults<String> best = new BestResults<String>();
+    lookup(queryValue, maxDist, distinct, budget, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  private void lookup(String queryValue, int maxDist, boolean distinct,
+                      LookupBudget budget, ResultSink<? super String> sink)
+  {
+    Scratch s = scratch.acquire();
+    try {
+      int minNgramDist = collect(queryValue, maxDist, distinct, s);
+      curate(queryValue, maxDist, s, minNgramDist, budget, sink);
+    } finally {
+      s.release();
     }
-    return curate(queryValue, maxDist, tmp);
   }
   /* +***************************************************************** */
   /**
    * <p>
-   * curates a result provided by {@link #lookup(Object) lookup()} such that
-   * it computes real distances according to the given metric. The method
-   * compares the value in each result element with the given query and keeps
-   * only those, which are no more distant than {@code maxDist}. Calling this
-   * method really only makes sense as a post processing of the lookup()
-   * method and requires two constraints:
+   * leaves the candidates for {@code queryValue} and their n-gram
+   * distances in {@code s} and returns the n-gram distance against which
+   * they must be eligible, which is {@code Integer.MAX_VALUE} in exact
+   * recall mode.
    * </p>
-   * <ol>
-   * <li>The {@code query} was used to for lookup() too.</li>
-   * <li>The metric is somehow compatible with n-gram similarity.</li>
-   * </ol>
+   */
+  int collect(String queryValue, int maxDist, boolean distinct, Scratch s) {
+    if( editWindow>0 ) {
+      getExactCandidates(queryValue, maxDist, distinct, s);
+      return Integer.MAX_VALUE;
+    }
+    return getNgramSimilar(queryValue, maxDist, distinct, s);
+  }
+  /* +***************************************************************** */
+  /**
    * <p>
-   * An example metric to use is a {@link LevenshteinMetric}.
+   * curates the candidates left in {@code s} by
+   * {@link #getNgramSimilar getNgramSimilar()} such that it computes real
+   * distances according to the given metric. Only candidates eligible with
+   * respect to {@code minNgramDist} are compared with the query, and only
+   * those no more distant than {@code maxDist} and the limit returned by
+   * the {@code sink} are passed to it. This requires that the metric is
+   * somehow compatible with n-gram similarity. An example metric to use is
+   * a {@link approdictio.levenshtein.LevenshteinMetric}. Each comparison
+   * spends one unit of the {@code budget}, if not {@code null}.
    * </p>
-   * 
-   * @return contains the metric distance values computed, not the original
-   *         trigram similarities and is sorted in ascending order of the
-   *         metric distance values.
    */
-  private List<ResultElem<String,Integer>> 
-  curate(String query, int maxDist,
-         List<ResultElem<String,Integer>> candidates)
+  private void curate(String query, int maxDist, Scratch s, int minNgramDist,
+                      LookupBudget budget, ResultSink<? super String> sink)
   {
-    List<ResultElem<String,Integer>> result =
-        newResultList(1+candidates.size()/2);
+    int limit = maxDist;
+    QueryScorer<String> scorer = metric.prepare(query);
 
-    int minDistSeen = Integer.MAX_VALUE;
-
-    for(ResultElem<String,Integer> re : candidates) {
-      int d = metric.d(query, re.value);
+    for(int i = 0, l = s.ids.size(); i<l && limit>=0; i++) {
+      if( !eligible(s.dists.get(i), minNgramDist, ngramLen) ) {
+        continue;
+      }
+      if( budget!=null && !budget.spend() ) {
+        break;
+      }
+      String value = terms[s.ids.get(i)];
+      int d = scorer.d(value, limit);
 
       // drop insufficient candidates early
-      if( d>maxDist||d>minDistSeen ) {
+      if( d>limit ) {
         continue;
       }
-
-      minDistSeen = d;
-      result.add(newResultElem(re.value, d));
+      limit = Math.min(limit, sink.found(value, d));
     }
-
-    return filterBest(result, minDistSeen);
   }
   /* +***************************************************************** */
-  private List<ResultElem<String,Integer>> 
-  filterBest(List<ResultElem<String,Integer>> candidates,
-             int bestDist)
-  {
-    List<ResultElem<String,Integer>> result =
-        newResultList(candidates.size());
+  /**
+   * <p>
+   * returns the {@code k} terms closest to {@code queryValue}, the closest
+   * first. The terms sharing n-grams with the query are ranked by their
+   * n-gram distance and compared with the metric in that order, such that
+   * close terms are found early and the largest distance of the best
+   * {@code k} found so far shrinks quickly. Terms which cannot beat it are
+   * skipped, see {@link #nearest(String,QueryScorer,KNearest,Scratch)}.
+   * </p>
+   * <p>
+   * Without exact recall, terms sharing no n-gram with the query are not
+   * found. In exact recall mode, the result is the same as that of a
+   * {@link BKTree}, except for the choice among equally distant terms.
+   * </p>
+   */
+  public List<ResultElem<String,Integer>> nearest(String queryValue,
+                                                  int k) {
+    KNearest<String> heap = new KNearest<String>(k);
+    Scratch s = scratch.acquire();
+    try {
+      nearest(queryValue, metric.prepare(queryValue), heap, s);
+    } finally {
+      s.release();
+    }
+    return heap.toList();
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * offers the terms to {@code heap} that may be closer to the query than
+   * {@link KNearest#bound heap.bound()}. A term is skipped without
+   * comparing it with the metric, if a {@link LengthBoundedMetric} is
+   * used and its length differs by at least the bound from the query
+   * length, or if in exact recall mode the q-gram lemma shows that its
+   * distance is at least the bound. In exact recall mode, the terms
+   * sharing no n-gram with the query are offered last.
+   * </p>
+   */
+  void nearest(String queryValue, QueryScorer<String> scorer,
+               KNearest<String> heap, Scratch s) {
+    if( heap.radius()<0 ) {
+      return;
+    }
+    int queryNgrams = s.query.compute(queryValue);
+    s.reset(termCount);
+    for(PostingMap index : byLength) {
+      if( index==null ) {
+        continue;
+      }
+      for(int i = 0; i<queryNgrams; i++) {
+        int slot = index.slot(s.query.key(i));
+        if( slot<0 ) {
+          continue;
+        }
+        int[] list = index.list(slot);
+        for(int j = 0, l = index.listSize(slot); j<l; j++) {
+          s.count(list[j]);
+        }
+      }
+    }
+    for(int i = 0, l = s.touched.size(); i<l; i++) {
+      int id = s.touched.get(i);
+      s.ids.push(id);
+      s.dists.push(queryNgrams+termNgrams[id]-2*s.countOf(id));
+    }
+    s.sortByDist();
 
-    for(ResultElem<String,Integer> cand : candidates) {
-      if( cand.d==bestDist ) {
-        result.add(cand);
+    int qlen = queryValue.length();
+    for(int i = 0, l = s.ids.size(); i<l; i++) {
+      int id = s.ids.get(i);
+      if( !beyond(qlen, queryNgrams, id, s.countOf(id), heap.bound()) ) {
+        heap.offer(terms[id], scorer.d(terms[id], heap.radius()));
+      }
+    }
+    if( idsByLength==null ) {
+      return;
+    }
+    for(IntStack ids : idsByLength) {
+      if( ids==null ) {
+        continue;
+      }
+      for(int i = 0, l = ids.size(); i<l; i++) {
+        int id = ids.get(i);
+        if( !s.isTouched(id)
+            && !beyond(qlen, queryNgrams, id, 0, heap.bound()) ) {
+          heap.offer(terms[id], scorer.d(terms[id], heap.radius()));
+        }
       }
     }
-    return result;
   }
   /* +***************************************************************** */
+  // tells whether the term id sharing that many n-grams with the query
+  // certainly has a distance of at least bound
+  private boolean beyond(int qlen, int queryNgrams, int id, int shared,
+                         int bound) {
+    if( lengthBounded && Math.abs(terms[id].length()-qlen)>=bound ) {
+      return true;
+    }
+    if( editWindow>0 ) {
+      long lost = Math.max(queryNgrams, termNgrams[id])-shared;
+      return (lost+editWindow-1)/editWindow>=bound;
+    }
+    return false;
+  }
 }
@@ -0,0 +1,114 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * computes the n-grams of a string as {@code long} keys instead of
+ * {@code String} objects. The string is padded as described for
+ * {@link NgramDict}. Up to 4 characters fit losslessly into a key, 16 bits
+ * each. Longer n-grams are hashed to 64 bits. Two different long n-grams
+ * share a key only with negligible probability, and if they do, their
+ * posting lists are merged, which affects only the n-gram distance, never
+ * the final metric distance.
+ * </p>
+ * <p>
+ * An object keeps its scratch arrays between calls and is therefore not
+ * thread safe.
+ * </p>
+ */
+final class NgramKeys {
+  static final char NOCHAR = '\u00B7';
+  private static final int MAX_PACKED = 4;
+
+  private final int ngramLen;
+  private final int pad;
+  private char[] padded = new char[32];
+  private long[] keys = new long[32];
+  private int count = 0;
+  /* +***************************************************************** */
+  NgramKeys(int ngramLen) {
+    this.ngramLen = ngramLen;
+    this.pad = (ngramLen+1)/2;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * computes the distinct keys of {@code s} in ascending order and returns
+   * their number. The keys are then available through {@link #key}.
+   * </p>
+   */
+  int compute(String s) {
+    int l = s.length()+2*pad;
+    if( padded.length<l ) {
+      padded = new char[l];
+      keys = new long[l];
+    }
+    Arrays.fill(padded, 0, pad, NOCHAR);
+    s.getChars(0, s.length(), padded, pad);
+    Arrays.fill(padded, pad+s.length(), l, NOCHAR);
+
+    int n = l-ngramLen+1;
+    for(int i = 0; i<n; i++) {
+      keys[i] = key(padded, i, ngramLen);
+    }
+    Arrays.sort(keys, 0, n);
+    count = 0;
+    for(int i = 0; i<n; i++) {
+      if( count==0 || keys[count-1]!=keys[i] ) {
+        keys[count++] = keys[i];
+      }
+    }
+    return count;
+  }
+  /* +***************************************************************** */
+  int size() {
+    return count;
+  }
+  /* +***************************************************************** */
+  long key(int i) {
+    return keys[i];
+  }
+  /* +***************************************************************** */
+  static long key(char[] cs, int from, int ngramLen) {
+    long key = 0;
+    if( ngramLen<=MAX_PACKED ) {
+      for(int i = 0; i<ngramLen; i++) {
+        key = (key<<16)|cs[from+i];
+      }
+      return key;
+    }
+    for(int i = 0; i<ngramLen; i++) {
+      key = (key+cs[from+i])*0x9E3779B97F4A7C15L;
+    }
+    return mix(key);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * spreads the bits of a key, as needed for hashing packed keys.
+   * </p>
+   */
+  static long mix(long key) {
+    key ^= key>>>33;
+    key *= 0xFF51AFD7ED558CCDL;
+    key ^= key>>>33;
+    key *= 0xC4CEB9FE1A85EC53L;
+    key ^= key>>>33;
+    return key;
+  }
+  /* +***************************************************************** */
+}
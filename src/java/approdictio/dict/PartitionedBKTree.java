@@ -0,0 +1,140 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * is a dictionary of strings which keeps one {@link BKTree} per string
+ * length. Since the metric is a {@link LengthBoundedMetric}, a lookup with
+ * maximum distance {@code k} only needs to search the trees for lengths
+ * within {@code k} of the query length. The trees are searched in order of
+ * increasing length difference and the maximum distance is lowered to the
+ * best distance found so far, so once a close match is found, trees for
+ * more distant lengths are not searched at all.
+ * </p>
+ * <p>
+ * The results are the same as for a single {@code BKTree} with the same
+ * metric.
+ * </p>
+ */
+public class PartitionedBKTree implements Dictionary<String, Integer> {
+  private final LengthBoundedMetric metric;
+
+  @SuppressWarnings("unchecked")
+  private BKTree<String>[] byLength = new BKTree[0];
+  /* +***************************************************************** */
+  public PartitionedBKTree(LengthBoundedMetric metric) {
+    this.metric = metric;
+  }
+  /* +***************************************************************** */
+  public void add(String value) {
+    int len = value.length();
+    if( len>=byLength.length ) {
+      byLength = Arrays.copyOf(byLength, len+1);
+    }
+    if( byLength[len]==null ) {
+      byLength[len] = new BKTree<String>(metric);
+    }
+    byLength[len].add(value);
+  }
+  /* +***************************************************************** */
+  public List<ResultElem<String,Integer>> lookup(String queryValue,
+                                                 Integer maxDist) {
+    BestResults<String> best = new BestResults<String>();
+    lookup(queryValue, maxDist, false, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  public List<ResultElem<String,Integer>> lookupDistinct(String queryValue,
+                                                         Integer maxDist) {
+    BestResults<String> best = new BestResults<String>();
+    lookup(queryValue, maxDist, true, best);
+    return best.toList();
+  }
+  /*+******************************************************************/
+  /**
+   * <p>
+   * passes every value at most {@code maxDist} away from {@code queryValue}
+   * to the {@code sink} as soon as it is found, like
+   * {@link BKTree#lookup(Object,int,ResultSink) BKTree.lookup()}. Trees
+   * for length differences beyond the limit returned by the sink are not
+   * searched.
+   * </p>
+   */
+  public void lookup(String queryValue, int maxDist,
+                     ResultSink<? super String> sink) {
+    lookup(queryValue, maxDist, false, sink);
+  }
+  /*+******************************************************************/
+  public void lookupDistinct(String queryValue, int maxDist,
+                             ResultSink<? super String> sink) {
+    lookup(queryValue, maxDist, true, sink);
+  }
+  /*+******************************************************************/
+  private void lookup(String queryValue, int maxDist, boolean distinct,
+                      ResultSink<? super String> sink) {
+    QueryScorer<String> scorer = metric.prepare(queryValue);
+    int bound = maxDist;
+    int qlen = queryValue.length();
+    BKTree<String>[] trees = byLength;
+    for(int delta = 0; delta<=bound; delta++) {
+      int shorter = qlen-delta;
+      int longer = qlen+delta;
+      if( shorter<0 && longer>=trees.length ) {
+        break;
+      }
+      if( shorter>=0 && shorter<trees.length && trees[shorter]!=null ) {
+        bound = trees[shorter].lookup(queryValue, scorer, bound, distinct,
+                                      null, sink);
+      }
+      if( delta>0 && longer<trees.length && trees[longer]!=null
+          && delta<=bound ) {
+        bound = trees[longer].lookup(queryValue, scorer, bound, distinct,
+                                     null, sink);
+      }
+    }
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the {@code k} values closest to {@code queryValue}. The trees
+   * are searched in order of increasing length difference with one result
+   * heap, and no tree is searched once its length difference reaches the
+   * largest distance of {@code k} values found.
+   * </p>
+   */
+  public List<ResultElem<String,Integer>> nearest(String queryValue, int k) {
+    KNearest<String> heap = new KNearest<String>(k);
+    QueryScorer<String> scorer = metric.prepare(queryValue);
+    int qlen = queryValue.length();
+    BKTree<String>[] trees = byLength;
+    for(int delta = 0; delta<heap.bound(); delta++) {
+      int shorter = qlen-delta;
+      int longer = qlen+delta;
+      if( shorter<0 && longer>=trees.length ) {
+        break;
+      }
+      if( shorter>=0 && shorter<trees.length && trees[shorter]!=null ) {
+        trees[shorter].nearest(scorer, heap);
+      }
+      if( delta>0 && longer<trees.length && trees[longer]!=null ) {
+        trees[longer].nearest(scorer, heap);
+      }
+    }
+    return heap.toList();
+  }
+}
@@ -0,0 +1,214 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * maps n-gram keys to posting lists of term ids. Keys live in a
+ * {@code long[]} with open addressing and linear probing, each posting
+ * list is an {@code int[]} of ascending term ids, such that neither keys
+ * nor ids are boxed.
+ * </p>
+ */
+final class PostingMap {
+  private static final int[] EMPTY = new int[0];
+
+  private long[] keys;
+  // null marks an empty slot
+  private int[][] lists;
+  private int[] sizes;
+  private int used = 0;
+  /* +***************************************************************** */
+  PostingMap() {
+    this(16);
+  }
+  /* +***************************************************************** */
+  private PostingMap(int capacity) {
+    keys = new long[capacity];
+    lists = new int[capacity][];
+    sizes = new int[capacity];
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the slot of {@code key} or -1 if the key is not in the map.
+   * </p>
+   */
+  int slot(long key) {
+    int mask = keys.length-1;
+    int i = (int)NgramKeys.mix(key)&mask;
+    while( lists[i]!=null ) {
+      if( keys[i]==key ) {
+        return i;
+      }
+      i = (i+1)&mask;
+    }
+    return -1;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * appends {@code id} to the posting list of {@code key}. Ids must be
+   * added in ascending order, adding the last id again has no effect.
+   * </p>
+   */
+  void add(long key, int id) {
+    int i = insert(key);
+    int size = sizes[i];
+    int[] list = lists[i];
+    if( size>0 && list[size-1]==id ) {
+      return;
+    }
+    if( size==list.length ) {
+      int[] tmp = new int[Math.max(2, size+(size>>1))];
+      System.arraycopy(list, 0, tmp, 0, size);
+      lists[i] = list = tmp;
+    }
+    list[size] = id;
+    sizes[i] = size+1;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * appends the posting lists of {@code other} to those of the same keys,
+   * adding {@code offset} to each id. The shifted ids must be larger than
+   * all ids already in the lists.
+   * </p>
+   */
+  void appendAll(PostingMap other, int offset) {
+    for(int j = 0; j<other.keys.length; j++) {
+      if( other.lists[j]==null ) {
+        continue;
+      }
+      int count = other.sizes[j];
+      int i = insert(other.keys[j]);
+      int size = sizes[i];
+      int[] list = lists[i];
+      if( size+count>list.length ) {
+        int[] tmp = new int[Math.max(size+count, size+(size>>1))];
+        System.arraycopy(list, 0, tmp, 0, size);
+        lists[i] = list = tmp;
+      }
+      int[] ids = other.lists[j];
+      for(int k = 0; k<count; k++) {
+        list[size+k] = ids[k]+offset;
+      }
+      sizes[i] = size+count;
+    }
+  }
+  /* +***************************************************************** */
+  // returns the slot of key, after creating it with an empty list if needed
+  private int insert(long key) {
+    if( 2*(used+1)>keys.length ) {
+      rehash(2*keys.length);
+    }
+    int mask = keys.length-1;
+    int i = (int)NgramKeys.mix(key)&mask;
+    while( lists[i]!=null && keys[i]!=key ) {
+      i = (i+1)&mask;
+    }
+    if( lists[i]==null ) {
+      keys[i] = key;
+      lists[i] = EMPTY;
+      used += 1;
+    }
+    return i;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns a copy with the smallest table that holds the keys and with
+   * posting lists that have no spare room.
+   * </p>
+   */
+  PostingMap trimmed() {
+    int capacity = 16;
+    while( capacity<2*used ) {
+      capacity *= 2;
+    }
+    PostingMap copy = new PostingMap(capacity);
+    int mask = capacity-1;
+    for(int j = 0; j<keys.length; j++) {
+      if( lists[j]==null ) {
+        continue;
+      }
+      int i = (int)NgramKeys.mix(keys[j])&mask;
+      while( copy.lists[i]!=null ) {
+        i = (i+1)&mask;
+      }
+      copy.keys[i] = keys[j];
+      copy.lists[i] = Arrays.copyOf(lists[j], sizes[j]);
+      copy.sizes[i] = sizes[j];
+    }
+    copy.used = used;
+    return copy;
+  }
+  /* +***************************************************************** */
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    int[][] oldLists = lists;
+    int[] oldSizes = sizes;
+    keys = new long[capacity];
+    lists = new int[capacity][];
+    sizes = new int[capacity];
+    int mask = capacity-1;
+    for(int j = 0; j<oldKeys.length; j++) {
+      if( oldLists[j]==null ) {
+        continue;
+      }
+      int i = (int)NgramKeys.mix(oldKeys[j])&mask;
+      while( lists[i]!=null ) {
+        i = (i+1)&mask;
+      }
+      keys[i] = oldKeys[j];
+      lists[i] = oldLists[j];
+      sizes[i] = oldSizes[j];
+    }
+  }
+  /* +***************************************************************** */
+  /** number of keys stored */
+  int size() {
+    return used;
+  }
+  /* +***************************************************************** */
+  /** number of slots, for iteration with {@link #isUsed} */
+  int capacity() {
+    return keys.length;
+  }
+  /* +***************************************************************** */
+  boolean isUsed(int slot) {
+    return lists[slot]!=null;
+  }
+  /* +***************************************************************** */
+  long keyAt(int slot) {
+    return keys[slot];
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the posting list of a slot. Only the first
+   * {@link #listSize listSize(slot)} elements are valid.
+   * </p>
+   */
+  int[] list(int slot) {
+    return lists[slot];
+  }
+  /* +***************************************************************** */
+  int listSize(int slot) {
+    return sizes[slot];
+  }
+  /* +***************************************************************** */
+}
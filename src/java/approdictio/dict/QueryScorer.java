@@ -0,0 +1,64 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+/**
+ * <p>
+ * computes distances of candidates to one fixed query according to an
+ * {@link IntMetric}. Objects are obtained from
+ * {@link IntMetric#prepare IntMetric.prepare()}, which can do any
+ * preprocessing of the query once instead of for every candidate.
+ * </p>
+ * <p>
+ * A scorer may keep scratch buffers and is therefore not thread safe. It is
+ * meant to be used for the duration of one lookup.
+ * </p>
+ * 
+ * @param <T> the type of objects compared
+ */
+public interface QueryScorer<T> {
+  /**
+   * <p>
+   * computes the distance between the prepared query and the candidate.
+   * </p>
+   * 
+   * @see IntMetric#d(Object,Object)
+   */
+  int d(T candidate);
+
+  /**
+   * <p>
+   * computes the distance between the prepared query and the candidate, but
+   * only as far as needed to decide whether it is at most {@code maxDist}.
+   * </p>
+   * 
+   * @return the exact distance, if it is at most {@code maxDist}, otherwise
+   *         some value greater than {@code maxDist}.
+   * @see IntMetric#d(Object,Object,int)
+   */
+  int d(T candidate, int maxDist);
+
+  /**
+   * <p>
+   * computes {@link #d(Object,int) d(candidates[i], maxDist)} for the first
+   * {@code count} candidates and stores the results in {@code dists[i]}.
+   * Implementations may override this to score several candidates at once.
+   * </p>
+   */
+  default void d(T[] candidates, int count, int maxDist, int[] dists) {
+    for(int i = 0; i<count; i++) {
+      dists[i] = d(candidates[i], maxDist);
+    }
+  }
+}
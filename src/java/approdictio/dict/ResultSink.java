@@ -0,0 +1,47 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.dict;
+
+/**
+ * <p>
+ * receives the values found by a lookup one by one as they are found,
+ * instead of collecting them in a list. The sink decides which values are
+ * still of interest by returning the largest distance it still wants,
+ * which the lookup uses to shrink its search. A sink that keeps only the
+ * closest values returns the smallest distance seen so far, which is
+ * what the list returning lookups do. A sink that wants all values within
+ * the lookup's maximum distance returns {@code Integer.MAX_VALUE}.
+ * </p>
+ * <p>
+ * A sink may look up values in the dictionary calling it. The n-gram
+ * dictionaries then give the nested lookup fresh buffers instead of the
+ * ones reused per thread.
+ * </p>
+ *
+ * @param <V> the type of values looked up
+ */
+public interface ResultSink<V> {
+  /**
+   * <p>
+   * receives a value with its distance to the query. The distance is never
+   * larger than the smallest limit returned before or the maximum
+   * distance of the lookup.
+   * </p>
+   *
+   * @return the largest distance of values still wanted. A lookup never
+   *         raises its limit, so returning a larger value than before has
+   *         no effect.
+   */
+  int found(V value, int d);
+}
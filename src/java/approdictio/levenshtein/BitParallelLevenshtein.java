@@ -0,0 +1,232 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * computes the unit cost Levenshtein distance with the bit-vector algorithm
+ * of Myers in the formulation of Hyyr&ouml;. The shorter of the two strings
+ * is encoded into bit vectors of 64 bits each, the other string is then
+ * scanned once, processing a whole column of the dynamic programming matrix
+ * with a few word operations per 64 rows.
+ * </p>
+ * <p>
+ * An object keeps its scratch tables between calls and is therefore
+ * <b>not</b> thread safe. {@link LevenshteinMetric} keeps one per thread.
+ * </p>
+ *
+ * @see <a href="http://dx.doi.org/10.1145/316542.316550">G. Myers, A fast
+ *      bit-vector algorithm for approximate string matching based on
+ *      dynamic programming</a>
+ * @see <a href="http://dx.doi.org/10.1007/s00236-003-0001-9">H. Hyyr&ouml;,
+ *      A bit-vector algorithm for computing Levenshtein and Damerau edit
+ *      distances</a>
+ */
+final class BitParallelLevenshtein implements EditDistanceKernel {
+  private final MatchVectors peq;
+  private int patternLength = 0;
+
+  // vertical delta vectors for patterns longer than 64 characters
+  private long[] vp = new long[2];
+  private long[] vn = new long[2];
+  /* +***************************************************************** */
+  BitParallelLevenshtein(UnitCosts costs) {
+    this.peq = new MatchVectors(costs);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * computes the unit cost Levenshtein distance of the given strings, but
+   * returns {@code maxDist+1} as soon as it is clear that the distance is
+   * larger than {@code maxDist}.
+   * </p>
+   */
+  @Override
+  public int d(String s1, String s2, int maxDist) {
+    int from = 0;
+    int to1 = s1.length();
+    int to2 = s2.length();
+
+    // common prefix and suffix do not contribute to the distance
+    int shorter = Math.min(to1, to2);
+    while( from<shorter && same(s1.charAt(from), s2.charAt(from)) ) {
+      from += 1;
+    }
+    while( to1>from && to2>from
+        && same(s1.charAt(to1-1), s2.charAt(to2-1)) ) {
+      to1 -= 1;
+      to2 -= 1;
+    }
+
+    int len1 = to1-from;
+    int len2 = to2-from;
+    if( Math.abs(len1-len2)>maxDist ) {
+      return maxDist+1;
+    }
+    if( len1==0 ) {
+      return len2;
+    }
+    if( len2==0 ) {
+      return len1;
+    }
+    if( len1<=len2 ) {
+      return distance(s1, from, len1, s2, from, len2, maxDist);
+    }
+    return distance(s2, from, len2, s1, from, len1, maxDist);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * encodes {@code pattern} for subsequent calls to {@link #score score()}.
+   * A call to {@link #d d()} overwrites the pattern.
+   * </p>
+   */
+  void setPattern(String pattern) {
+    patternLength = pattern.length();
+    peq.build(pattern, 0, patternLength);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * computes the distance between {@code text} and the pattern set with
+   * {@link #setPattern setPattern()} with the same contract as
+   * {@link #d d()}.
+   * </p>
+   */
+  int score(String text, int maxDist) {
+    int m = patternLength;
+    int n = text.length();
+    if( Math.abs(m-n)>maxDist ) {
+      return maxDist+1;
+    }
+    if( m==0 ) {
+      return n;
+    }
+    return run(m, text, 0, n, maxDist);
+  }
+  /* +***************************************************************** */
+  private int distance(String pattern, int pFrom, int m,
+                       String text, int tFrom, int n, int maxDist)
+  {
+    peq.build(pattern, pFrom, m);
+    return run(m, text, tFrom, n, maxDist);
+  }
+  /* +***************************************************************** */
+  private int run(int m, String text, int tFrom, int n, int maxDist) {
+    int score;
+    if( peq.words()==1 ) {
+      score = singleWord(m, text, tFrom, n, maxDist);
+    } else {
+      score = multiWord(m, text, tFrom, n, maxDist);
+    }
+    return score>maxDist ? maxDist+1 : score;
+  }
+  /* +***************************************************************** */
+  // The last row of the matrix can decrease by at most one per column, so
+  // once the score minus the remaining columns exceeds maxDist, the final
+  // distance will too.
+  private int singleWord(int m, String text, int tFrom, int n, int maxDist) {
+    long last = 1L<<(m-1);
+    long pv = -1L;
+    long mv = 0L;
+    int score = m;
+    int tTo = tFrom+n;
+    for(int j = tFrom; j<tTo; j++) {
+      long eq = peq.get(peq.slot(text.charAt(j)), 0);
+      long xv = eq|mv;
+      long xh = (((eq&pv)+pv)^pv)|eq;
+      long ph = mv|~(xh|pv);
+      long mh = pv&xh;
+      if( (ph&last)!=0 ) {
+        score += 1;
+      } else if( (mh&last)!=0 ) {
+        score -= 1;
+      }
+      ph = (ph<<1)|1L;
+      mh = mh<<1;
+      pv = mh|~(xv|ph);
+      mv = ph&xv;
+      if( score-(tTo-j-1)>maxDist ) {
+        return score;
+      }
+    }
+    return score;
+  }
+  /* +***************************************************************** */
+  private int multiWord(int m, String text, int tFrom, int n, int maxDist) {
+    int words = peq.words();
+    if( vp.length<words ) {
+      vp = new long[words];
+      vn = new long[words];
+    }
+    long[] pvs = vp;
+    long[] mvs = vn;
+    Arrays.fill(pvs, 0, words, -1L);
+    Arrays.fill(mvs, 0, words, 0L);
+    long last = 1L<<((m-1)&63);
+    int lastWord = words-1;
+    int score = m;
+    int tTo = tFrom+n;
+    for(int j = tFrom; j<tTo; j++) {
+      int slot = peq.slot(text.charAt(j));
+      // the top row of the matrix increases by one in each column
+      int hin = 1;
+      for(int w = 0; w<words; w++) {
+        long eq = peq.get(slot, w);
+        long pv = pvs[w];
+        long mv = mvs[w];
+        long xv = eq|mv;
+        if( hin<0 ) {
+          eq |= 1L;
+        }
+        long xh = (((eq&pv)+pv)^pv)|eq;
+        long ph = mv|~(xh|pv);
+        long mh = pv&xh;
+        long high = w==lastWord ? last : Long.MIN_VALUE;
+        int hout = 0;
+        if( (ph&high)!=0 ) {
+          hout = 1;
+        } else if( (mh&high)!=0 ) {
+          hout = -1;
+        }
+        ph <<= 1;
+        mh <<= 1;
+        if( hin<0 ) {
+          mh |= 1L;
+        } else if( hin>0 ) {
+          ph |= 1L;
+        }
+        pvs[w] = mh|~(xv|ph);
+        mvs[w] = ph&xv;
+        hin = hout;
+      }
+      score += hin;
+      if( score-(tTo-j-1)>maxDist ) {
+        return score;
+      }
+    }
+    return score;
+  }
+  /* +***************************************************************** */
+  private boolean same(char c1, char c2) {
+    return c1==c2 || fold(c1)==fold(c2);
+  }
+  /* +***************************************************************** */
+  private char fold(char c) {
+    return peq.normalize(c);
+  }
+  /* +***************************************************************** */
+}
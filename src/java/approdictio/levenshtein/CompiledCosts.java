@@ -0,0 +1,76 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein;
+
+/**
+ * <p>
+ * is a {@link LevenCosts} implementation that precomputes the costs of
+ * another one into lookup tables for the first {@code tableChars}
+ * characters. Costs involving other characters are delegated to the
+ * original cost function. Since this class is final and the tables are
+ * plain arrays, the {@link LevenshteinMetric} looks up most costs in its
+ * inner loop without calling the original cost function.
+ * </p>
+ * <p>
+ * Objects are created with {@link CostFunctions#compile}. The wrapped cost
+ * function must be a pure function of its arguments.
+ * </p>
+ */
+public final class CompiledCosts implements LevenCosts {
+  private final LevenCosts costs;
+  private final int tableChars;
+  private final int[] insdel;
+  private final int[] subst;
+
+  /* +***************************************************************** */
+  CompiledCosts(LevenCosts costs, int tableChars) {
+    this.costs = costs;
+    this.tableChars = tableChars;
+    this.insdel = new int[tableChars];
+    this.subst = new int[tableChars*tableChars];
+    for(int i = 0; i<tableChars; i++) {
+      char c1 = (char)i;
+      insdel[i] = costs.insdelCost(c1);
+      for(int j = 0; j<tableChars; j++) {
+        subst[i*tableChars+j] = costs.substCost(c1, (char)j);
+      }
+    }
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the cost function that was compiled.
+   * </p>
+   */
+  public LevenCosts getSource() {
+    return costs;
+  }
+  /* +***************************************************************** */
+  @Override
+  public int insdelCost(char c) {
+    if( c<tableChars ) {
+      return insdel[c];
+    }
+    return costs.insdelCost(c);
+  }
+  /* +***************************************************************** */
+  @Override
+  public int substCost(char c1, char c2) {
+    if( c1<tableChars && c2<tableChars ) {
+      return subst[c1*tableChars+c2];
+    }
+    return costs.substCost(c1, c2);
+  }
+  /* +***************************************************************** */
+}
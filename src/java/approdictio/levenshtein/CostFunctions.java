@@ -33,17 +33,9 @@ public final class CostFunctions {
    * vice versa has zero cost.
    * </p>
    */
-  public static final LevenCosts caseIgnore = new LevenCosts() {
-    public int insdelCost(char c) {
-      return 1;
-    }
-
-    public int substCost(char c1, char c2) {
-      if( Character.toLowerCase(c1) == Character.toLowerCase(c2) ) {
-        return 0;
-      } else {
-        return 1;
-      }
+  public static final LevenCosts caseIgnore = new UnitCosts() {
+    public char normalize(char c) {
+      return Character.toLowerCase(c);
     }
   };
 
@@ -54,14 +46,63 @@ public final class CostFunctions {
    * operations have cost 1.
    * </p>
    */
-  public static final LevenCosts defaultCosts = new LevenCosts() {
-    public int insdelCost(char c) {
-      return 1;
-    }
-    public int substCost(char c1, char c2) {
-      if( c1 == c2 ) return 0;
-      return 1;
+  public static final LevenCosts defaultCosts = new UnitCosts() {
+    public char normalize(char c) {
+      return c;
     }
   };
   // +********************************************************************
+  /**
+   * <p>
+   * is the number of characters, starting at {@code '\u0000'}, for which
+   * {@link #compile(LevenCosts)} precomputes costs. It covers ISO-8859-1.
+   * </p>
+   */
+  public static final int DEFAULT_TABLE_CHARS = 256;
+
+  // keeps the substitution table at 64MB
+  private static final int MAX_TABLE_CHARS = 4096;
+  // +********************************************************************
+  /**
+   * <p>
+   * precomputes the given costs for the first {@link #DEFAULT_TABLE_CHARS}
+   * characters.
+   * </p>
+   * 
+   * @see #compile(LevenCosts, int)
+   */
+  public static CompiledCosts compile(LevenCosts costs) {
+    return compile(costs, DEFAULT_TABLE_CHARS);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * precomputes the given costs into tables for the first {@code tableChars}
+   * characters, such that a {@link LevenshteinMetric} using the result
+   * needs only array lookups instead of calls to {@code costs} for most
+   * characters. The substitution table needs {@code 4*tableChars*tableChars}
+   * bytes, so a compiled cost function should be shared rather than
+   * recreated.
+   * </p>
+   * <p>
+   * Compiling {@link UnitCosts} is not useful, since they are handled by a
+   * faster, specialized algorithm anyway.
+   * </p>
+   * 
+   * @param costs must be a pure function of its arguments
+   * @param tableChars the number of characters to tabulate
+   * @throws IllegalArgumentException if {@code tableChars} is negative or
+   *         greater than 4096.
+   */
+  public static CompiledCosts compile(LevenCosts costs, int tableChars) {
+    if( tableChars<0 || tableChars>MAX_TABLE_CHARS ) {
+      throw new IllegalArgumentException("tableChars must be in [0,"
+          +MAX_TABLE_CHARS+"] but is "+tableChars);
+    }
+    if( costs instanceof CompiledCosts ) {
+      costs = ((CompiledCosts)costs).getSource();
+    }
+    return new CompiledCosts(costs, tableChars);
+  }
+  // +********************************************************************
 }
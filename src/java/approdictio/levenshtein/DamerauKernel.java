@@ -0,0 +1,225 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * computes the unrestricted Damerau-Levenshtein distance for
+ * {@link UnitCosts} with the algorithm of Lowrance and Wagner. Since a
+ * transposition may refer back to any earlier row, all rows are kept.
+ * </p>
+ * <p>
+ * Every edit changes the length difference of the prefixes compared by at
+ * most one, so an entry at row {@code i} and column {@code j} is at least
+ * {@code |i-j|}. With a {@code maxDist}, only the band of entries with
+ * {@code |i-j|<=maxDist} is computed and stored, row {@code i} starting
+ * with column {@code max(0, i-maxDist-1)}. The computation stops once a
+ * whole row exceeds {@code maxDist}. The matrix buffer is reused between
+ * calls up to {@link #RETAINED} entries, larger ones are dropped after the
+ * call.
+ * </p>
+ * 
+ * @see <a href="http://dx.doi.org/10.1145/321879.321880">R. Lowrance and
+ *      R. A. Wagner, An Extension of the String-to-String Correction
+ *      Problem</a>
+ */
+final class DamerauKernel implements EditDistanceKernel {
+  // keeps the sum of capped entries and a cost from overflowing
+  private static final int UNBOUNDED = Integer.MAX_VALUE/2;
+
+  // largest matrix kept for the next call
+  private static final int RETAINED = 1<<20;
+
+  // some VMs reserve header words in an array
+  private static final int MAX_ARRAY = Integer.MAX_VALUE-8;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final UnitCosts costs;
+
+  private int[] matrix = new int[256];
+  private char[] as = new char[16];
+  private char[] bs = new char[16];
+
+  // maps a character to the last row in which it occurred in the first
+  // string, using the same generation trick as MatchVectors
+  private char[] keys = new char[INITIAL_CAPACITY];
+  private int[] stamps = new int[INITIAL_CAPACITY];
+  private int[] rows = new int[INITIAL_CAPACITY];
+  private int generation = 0;
+  /* +***************************************************************** */
+  DamerauKernel(UnitCosts costs) {
+    this.costs = costs;
+  }
+  /* +***************************************************************** */
+  @Override
+  public int d(String a, String b, int maxDist) {
+    int limit = Math.min(maxDist, UNBOUNDED);
+    int tooFar = limit+1;
+    int m = a.length();
+    int n = b.length();
+    if( Math.abs(m-n)>limit ) {
+      return tooFar;
+    }
+    // no entry needed lies further off the diagonal than the longer string
+    int band = Math.min(limit, Math.max(m, n));
+    int w = (int)Math.min(n+1, 2L*band+3);
+    int[] h = prepare(a, b, w);
+    char[] as = this.as;
+    char[] bs = this.bs;
+
+    // row 0 is the empty prefix of a
+    for(int j = 0, to = Math.min(n, band+1); j<=to; j++) {
+      h[j] = Math.min(j, tooFar);
+    }
+
+    for(int i = 1; i<=m; i++) {
+      char ca = as[i];
+      int from = Math.max(1, i-band);
+      int to = Math.min(n, i+band);
+      // h[row+j] and h[up+j] are the entries at column j of rows i and i-1
+      int row = base(i, w, band);
+      int up = base(i-1, w, band);
+      int rowMin = from==1 ? Math.min(i, tooFar) : tooFar;
+      h[row+from-1] = rowMin;
+
+      // last column before from that matches ca and may still be useful
+      int db = 0;
+      for(int l = from-1; l>0 && l>=from-1-band; l--) {
+        if( bs[l]==ca ) {
+          db = l;
+          break;
+        }
+      }
+
+      for(int j = from; j<=to; j++) {
+        char cb = bs[j];
+        int k = lastRow(cb);
+        int l = db;
+        int cost = 1;
+        if( ca==cb ) {
+          cost = 0;
+          db = j;
+        }
+        int dist = h[up+j-1]+cost;
+        dist = Math.min(dist, h[up+j]+1);
+        dist = Math.min(dist, h[row+j-1]+1);
+        // swap of b[l] and b[j] against a[k] and a[i], with everything in
+        // between deleted or inserted
+        if( k>0 && l>0 && Math.abs(k-l)<=band ) {
+          int swap = h[base(k-1, w, band)+l-1]+(i-k-1)+1+(j-l-1);
+          dist = Math.min(dist, swap);
+        }
+        dist = Math.min(dist, tooFar);
+        h[row+j] = dist;
+        if( dist<rowMin ) {
+          rowMin = dist;
+        }
+      }
+      // A swap reaching back over this row deletes at least as many
+      // characters of a as there are rows skipped, so some entry of this
+      // row would be no larger.
+      if( rowMin>=tooFar ) {
+        return tooFar;
+      }
+      if( to<n ) {
+        h[row+to+1] = tooFar;
+      }
+      setLastRow(ca, i);
+    }
+    return h[base(m, w, band)+n];
+  }
+  /* +***************************************************************** */
+  // offset such that column j of row i is at base+j
+  private static int base(int i, int w, int band) {
+    return i*w-Math.max(0, i-band-1);
+  }
+  /* +***************************************************************** */
+  private int[] prepare(String a, String b, int w) {
+    int m = a.length();
+    int n = b.length();
+    long size = (long)(m+1)*w;
+    if( size>MAX_ARRAY ) {
+      throw new IllegalArgumentException("strings of length "+m+" and "+n
+          +" need a matrix of "+size+" entries, which is too large");
+    }
+    if( as.length<=m ) {
+      as = new char[m+1];
+    }
+    if( bs.length<=n ) {
+      bs = new char[n+1];
+    }
+    for(int i = 0; i<m; i++) {
+      as[i+1] = costs.normalize(a.charAt(i));
+    }
+    for(int j = 0; j<n; j++) {
+      bs[j+1] = costs.normalize(b.charAt(j));
+    }
+
+    int needed = keys.length;
+    while( needed<2*m ) {
+      needed *= 2;
+    }
+    if( needed!=keys.length ) {
+      keys = new char[needed];
+      stamps = new int[needed];
+      rows = new int[needed];
+      generation = 0;
+    }
+    if( generation==Integer.MAX_VALUE ) {
+      Arrays.fill(stamps, 0);
+      generation = 0;
+    }
+    generation += 1;
+
+    if( matrix.length>=size ) {
+      return matrix;
+    }
+    int[] h = new int[(int)size];
+    if( size<=RETAINED ) {
+      matrix = h;
+    }
+    return h;
+  }
+  /* +***************************************************************** */
+  private static int hash(char c) {
+    return c*0x9E3779B1>>>16;
+  }
+  /* +***************************************************************** */
+  private int lastRow(char c) {
+    int mask = keys.length-1;
+    int h = hash(c)&mask;
+    while( stamps[h]==generation ) {
+      if( keys[h]==c ) {
+        return rows[h];
+      }
+      h = (h+1)&mask;
+    }
+    return 0;
+  }
+  /* +***************************************************************** */
+  private void setLastRow(char c, int row) {
+    int mask = keys.length-1;
+    int h = hash(c)&mask;
+    while( stamps[h]==generation && keys[h]!=c ) {
+      h = (h+1)&mask;
+    }
+    stamps[h] = generation;
+    keys[h] = c;
+    rows[h] = row;
+  }
+  /* +***************************************************************** */
+}
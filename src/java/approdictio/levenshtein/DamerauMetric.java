@@ -0,0 +1,83 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein;
+
+/**
+ * <p>
+ * implements the unrestricted Damerau-Levenshtein distance. In addition to
+ * insertion, deletion and substitution, swapping two adjacent characters
+ * costs 1, and characters may be edited again after the swap. Contrary to
+ * {@link OsaMetric}, this is a real metric and can be used with a
+ * {@link approdictio.dict.BKTree}.
+ * </p>
+ * <p>
+ * The distance is computed with the algorithm of Lowrance and Wagner. If a
+ * {@code maxDist} is given, only the diagonal band of the matrix is filled
+ * that can be reached with {@code maxDist} edits.
+ * </p>
+ * 
+ * @see <a href="http://en.wikipedia.org/wiki/Damerau%E2%80%93Levenshtein_distance">English
+ *      Wikipedia on the Damerau-Levenshtein distance</a>
+ */
+public class DamerauMetric extends KernelMetric {
+  private final UnitCosts costs;
+
+  // +********************************************************************
+  /**
+   * <p>
+   * creates the metric with the costs of {@link CostFunctions#defaultCosts}.
+   * </p>
+   */
+  public DamerauMetric() {
+    this(CostFunctions.defaultCosts);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * creates the metric with the given costs, which must be
+   * {@link UnitCosts}, for example {@link CostFunctions#caseIgnore}. The
+   * swap of two adjacent characters also costs 1.
+   * </p>
+   * 
+   * @throws IllegalArgumentException if {@code c} is not a {@code UnitCosts}
+   */
+  public DamerauMetric(LevenCosts c) {
+    this.costs = unitCosts(c);
+  }
+  // +********************************************************************
+  static UnitCosts unitCosts(LevenCosts c) {
+    if( !(c instanceof UnitCosts) ) {
+      throw new IllegalArgumentException("costs must implement "
+          +UnitCosts.class.getName());
+    }
+    return (UnitCosts)c;
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * returns 2, since a swap changes two characters, for
+   * {@link CostFunctions#defaultCosts} and 0 for all other costs.
+   * </p>
+   */
+  @Override
+  public int editSpan() {
+    return costs==CostFunctions.defaultCosts ? 2 : 0;
+  }
+  // +********************************************************************
+  @Override
+  EditDistanceKernel newKernel() {
+    return new DamerauKernel(costs);
+  }
+  // +********************************************************************
+}
@@ -0,0 +1,35 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein;
+
+/**
+ * <p>
+ * is the common interface of the algorithms computing an edit distance.
+ * Implementations keep scratch buffers between calls, such that steady
+ * state computations do not allocate. They are consequently <b>not</b> thread
+ * safe and are kept per thread by the metrics using them.
+ * </p>
+ */
+interface EditDistanceKernel {
+  /**
+   * <p>
+   * computes the edit distance between the given strings.
+   * </p>
+   * 
+   * @return the distance, if it is at most {@code maxDist}, otherwise
+   *         {@code maxDist+1}. Pass {@code Integer.MAX_VALUE} to always get
+   *         the exact distance.
+   */
+  int d(String s1, String s2, int maxDist);
+}
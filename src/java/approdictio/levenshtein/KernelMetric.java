@@ -0,0 +1,82 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein;
+
+import approdictio.dict.IntMetric;
+import approdictio.dict.EditCountMetric;
+import approdictio.dict.LengthBoundedMetric;
+import approdictio.dict.QueryScorer;
+
+/**
+ * <p>
+ * implements an {@link IntMetric} on strings on top of an
+ * {@link EditDistanceKernel}. One kernel is kept per thread for calls to
+ * {@code d()}, and every {@link #prepare prepared} scorer gets one of its
+ * own. The kernels compute unit cost distances, so the metric is
+ * {@link LengthBoundedMetric length bounded}.
+ * </p>
+ */
+abstract class KernelMetric implements EditCountMetric {
+  private final ThreadLocal<EditDistanceKernel> kernel =
+      new ThreadLocal<EditDistanceKernel>() {
+        @Override
+        protected EditDistanceKernel initialValue() {
+          return newKernel();
+        }
+      };
+  // +********************************************************************
+  /**
+   * <p>
+   * creates a fresh kernel. Called once per thread and once per prepared
+   * scorer.
+   * </p>
+   */
+  abstract EditDistanceKernel newKernel();
+  // +********************************************************************
+  @Override
+  public int d(String v1, String v2) {
+    return kernel.get().d(v1, v2, Integer.MAX_VALUE);
+  }
+  // +********************************************************************
+  /**
+   * @return the distance, if it is at most {@code maxDist}, otherwise
+   *         {@code maxDist+1}.
+   */
+  @Override
+  public int d(String v1, String v2, int maxDist) {
+    if( maxDist<0 ) {
+      return maxDist+1;
+    }
+    return kernel.get().d(v1, v2, maxDist);
+  }
+  // +********************************************************************
+  @Override
+  public QueryScorer<String> prepare(final String query) {
+    final EditDistanceKernel k = newKernel();
+    return new QueryScorer<String>() {
+      @Override
+      public int d(String candidate) {
+        return k.d(query, candidate, Integer.MAX_VALUE);
+      }
+      @Override
+      public int d(String candidate, int maxDist) {
+        if( maxDist<0 ) {
+          return maxDist+1;
+        }
+        return k.d(query, candidate, maxDist);
+      }
+    };
+  }
+  // +********************************************************************
+}
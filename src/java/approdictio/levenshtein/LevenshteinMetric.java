@@ -13,7 +13,9 @@
 // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
 package approdictio.levenshtein;
 
-import approdictio.dict.IntMetric;
+import approdictio.dict.EditCountMetric;
+import approdictio.dict.LengthBoundedMetric;
+import approdictio.dict.QueryScorer;
 
 /**
  * <p>
@@ -21,13 +23,32 @@ import approdictio.dict.IntMetric;
  * this class can be parameterized by implemenations of {@link LevenCosts} to
  * tune the costs of the edit operations.
  * </p>
+ * <p>
+ * For {@link UnitCosts}, like {@link CostFunctions#defaultCosts} and
+ * {@link CostFunctions#caseIgnore}, the distance is computed with a
+ * bit-parallel algorithm which does not fill the full dynamic programming
+ * matrix and is several times faster. Other costs are best passed through
+ * {@link CostFunctions#compile} before handing them to the metric.
+ * </p>
+ * <p>
+ * Computations use scratch buffers that are kept per thread and reused, so
+ * after warm-up no memory is allocated per call. A metric object can be
+ * shared between threads.
+ * </p>
+ * <p>
+ * Costs must charge at least 1 for inserting or deleting a character.
+ * Then the distance is never smaller than the difference of the string
+ * lengths, as promised by {@link LengthBoundedMetric}.
+ * </p>
  * 
  * @author harald
  * 
  */
-public class LevenshteinMetric implements IntMetric<String> {
+public class LevenshteinMetric implements EditCountMetric {
   private final LevenCosts costs;
 
+  private final ThreadLocal<EditDistanceKernel> kernel;
+
   // +********************************************************************
   /**
    * <p>
@@ -36,7 +57,7 @@ public class LevenshteinMetric implements IntMetric<String> {
    * </p>
    */
   public LevenshteinMetric() {
-    this.costs = CostFunctions.defaultCosts;
+    this(CostFunctions.defaultCosts);
   }
   /**
    * <p>
@@ -49,6 +70,30 @@ public class LevenshteinMetric implements IntMetric<String> {
    */
   public LevenshteinMetric(LevenCosts c) {
     this.costs = c;
+    this.kernel = new ThreadLocal<EditDistanceKernel>() {
+      @Override
+      protected EditDistanceKernel initialValue() {
+        return newKernel();
+      }
+    };
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * returns 1 for {@link CostFunctions#defaultCosts}, where the distance
+   * is the number of edit operations, and 0 for all other costs.
+   * </p>
+   */
+  @Override
+  public int editSpan() {
+    return costs==CostFunctions.defaultCosts ? 1 : 0;
+  }
+  // +********************************************************************
+  private EditDistanceKernel newKernel() {
+    if( costs instanceof UnitCosts ) {
+      return new BitParallelLevenshtein((UnitCosts)costs);
+    }
+    return new RowLevenshtein(costs);
   }
   // +********************************************************************
   /**
@@ -58,30 +103,109 @@ public class LevenshteinMetric implements IntMetric<String> {
    * </p>
    */
   public int d(String v1, String v2) {
-    int m = v1.length() + 1;
-    int n = v2.length() + 1;
-    int[][] d = new int[m][n];
-
-    for(int i = 0; i < m; i++) {
-      d[i][0] = i;
+    return kernel.get().d(v1, v2, Integer.MAX_VALUE);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * computes the Levenshtein edit distance like {@link #d(String,String)},
+   * but only fills the diagonal band of the matrix that can be reached with
+   * at most {@code maxDist} insertions and deletions. Computation stops as
+   * soon as all entries of a matrix row exceed {@code maxDist}.
+   * </p>
+   * <p>
+   * The band assumes that inserting or deleting a character costs at least
+   * 1, which is necessary anyway for the costs to define a metric.
+   * </p>
+   * 
+   * @return the distance, if it is at most {@code maxDist}, otherwise
+   *         {@code maxDist+1}.
+   */
+  @Override
+  public int d(String v1, String v2, int maxDist) {
+    if( maxDist<0 ) {
+      return maxDist+1;
     }
-    for(int i = 1; i < n; i++) {
-      d[0][i] = i;
+    return kernel.get().d(v1, v2, maxDist);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * returns a scorer that computes distances to {@code query} with scratch
+   * buffers of its own. For {@link UnitCosts}, the bit vectors encoding the
+   * query are computed only once.
+   * </p>
+   */
+  @Override
+  public QueryScorer<String> prepare(String query) {
+    if( costs instanceof UnitCosts ) {
+      return new BitParallelScorer(query);
     }
-
-    for(int i = 1; i < m; i++) {
-      char ch1 = v1.charAt(i - 1);
-      for(int j = 1; j < n; j++) {
-        char ch2 = v2.charAt(j - 1);
-        int subst = d[i - 1][j - 1] + costs.substCost(ch1, ch2);
-        int delete = d[i - 1][j] + costs.insdelCost(ch1);
-        int insert = d[i][j - 1] + costs.insdelCost(ch2);
-        d[i][j] = Math.min(Math.min(subst, delete), insert);
+    return new RowScorer(query);
+  }
+  // +********************************************************************
+  private abstract class Scorer implements QueryScorer<String> {
+    protected final String query;
+    Scorer(String query) {
+      this.query = query;
+    }
+    @Override
+    public int d(String candidate) {
+      return d(candidate, Integer.MAX_VALUE);
+    }
+    @Override
+    public void d(String[] candidates, int count, int maxDist, int[] dists) {
+      LevenshteinMetric.this.d(query, candidates, count, maxDist, dists);
+    }
+  }
+  // +********************************************************************
+  private final class BitParallelScorer extends Scorer {
+    private final BitParallelLevenshtein kernel =
+        new BitParallelLevenshtein((UnitCosts)costs);
+    BitParallelScorer(String query) {
+      super(query);
+      kernel.setPattern(query);
+    }
+    @Override
+    public int d(String candidate, int maxDist) {
+      if( maxDist<0 ) {
+        return maxDist+1;
       }
-
+      return kernel.score(candidate, maxDist);
+    }
+  }
+  // +********************************************************************
+  private final class RowScorer extends Scorer {
+    private final RowLevenshtein kernel =
+        new RowLevenshtein(costs);
+    RowScorer(String query) {
+      super(query);
+    }
+    @Override
+    public int d(String candidate, int maxDist) {
+      if( maxDist<0 ) {
+        return maxDist+1;
+      }
+      return kernel.d(query, candidate, maxDist);
+    }
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * computes the distances between {@code query} and each of the first
+   * {@code count} {@code candidates} as if calling
+   * {@link #d(String,String,int) d(query, candidates[i], maxDist)} and
+   * stores them in {@code dists[i]}. Subclasses may override this to score
+   * several candidates at once.
+   * </p>
+   */
+  public void d(String query, String[] candidates, int count, int maxDist,
+                int[] dists)
+  {
+    EditDistanceKernel k = kernel.get();
+    for(int i = 0; i < count; i++) {
+      dists[i] = maxDist<0 ? maxDist+1 : k.d(query, candidates[i], maxDist);
     }
-    //System.out.printf("%s--%s: %d%n", v1, v2, d[m-1][n-1]);
-    return d[m - 1][n - 1];
   }
   // +********************************************************************
 }
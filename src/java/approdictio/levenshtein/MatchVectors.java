@@ -0,0 +1,143 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * maps the characters of a pattern to their match vectors as needed by the
+ * bit-parallel algorithms. Bit {@code i} of the match vector of character
+ * {@code c} is set if the pattern has {@code c} at position {@code i}.
+ * Patterns longer than 64 characters use several words per character.
+ * Characters are compared after {@link UnitCosts#normalize normalization}.
+ * </p>
+ * <p>
+ * The vectors are kept in an open addressing table. Slots are valid only if
+ * their stamp equals the current generation, so the table never needs to be
+ * cleared when a new pattern is set.
+ * </p>
+ */
+final class MatchVectors {
+  private static final int INITIAL_CAPACITY = 128;
+
+  private final UnitCosts costs;
+
+  private char[] keys = new char[INITIAL_CAPACITY];
+  private int[] stamps = new int[INITIAL_CAPACITY];
+  private long[] peq = new long[INITIAL_CAPACITY];
+  private int capacity = INITIAL_CAPACITY;
+  private int generation = 0;
+  private int words = 1;
+  /* +***************************************************************** */
+  MatchVectors(UnitCosts costs) {
+    this.costs = costs;
+  }
+  /* +***************************************************************** */
+  char normalize(char c) {
+    return costs.normalize(c);
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the number of 64 bit words per match vector.
+   * </p>
+   */
+  int words() {
+    return words;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns word {@code w} of the match vectors of the character at
+   * {@code slot}, which must be the result of {@link #slot slot()}.
+   * </p>
+   */
+  long get(int slot, int w) {
+    return slot<0 ? 0L : peq[slot+w];
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the offset of the match vectors of {@code c} or -1 if
+   * {@code c} does not occur in the pattern.
+   * </p>
+   */
+  int slot(char c) {
+    c = costs.normalize(c);
+    int mask = capacity-1;
+    int gen = generation;
+    int h = hash(c)&mask;
+    while( stamps[h]==gen ) {
+      if( keys[h]==c ) {
+        return h*words;
+      }
+      h = (h+1)&mask;
+    }
+    return -1;
+  }
+  /* +***************************************************************** */
+  private static int hash(char c) {
+    return c*0x9E3779B1>>>16;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * sets the pattern to the {@code m} characters of {@code pattern}
+   * starting at {@code from}.
+   * </p>
+   */
+  void build(String pattern, int from, int m) {
+    words = Math.max(1, (m+63)>>>6);
+    ensureCapacity(m);
+    if( generation==Integer.MAX_VALUE ) {
+      Arrays.fill(stamps, 0);
+      generation = 0;
+    }
+    generation += 1;
+
+    int mask = capacity-1;
+    for(int i = 0; i<m; i++) {
+      char c = costs.normalize(pattern.charAt(from+i));
+      int h = hash(c)&mask;
+      while( stamps[h]==generation && keys[h]!=c ) {
+        h = (h+1)&mask;
+      }
+      if( stamps[h]!=generation ) {
+        stamps[h] = generation;
+        keys[h] = c;
+        Arrays.fill(peq, h*words, (h+1)*words, 0L);
+      }
+      peq[h*words+(i>>>6)] |= 1L<<(i&63);
+    }
+  }
+  /* +***************************************************************** */
+  private void ensureCapacity(int m) {
+    // keep the load factor of the table at most one half
+    int needed = capacity;
+    while( needed<2*m ) {
+      needed *= 2;
+    }
+    if( needed!=capacity ) {
+      capacity = needed;
+      keys = new char[needed];
+      stamps = new int[needed];
+      generation = 0;
+    }
+    if( peq.length<capacity*words ) {
+      peq = new long[capacity*words];
+    }
+  }
+  /* +***************************************************************** */
+}
@@ -0,0 +1,161 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein;
+
+/**
+ * <p>
+ * computes the optimal string alignment distance for {@link UnitCosts}.
+ * If the shorter string has at most 64 characters, the bit-parallel
+ * algorithm of Hyyr&ouml; is used, which extends the algorithm of Myers by
+ * a vector of positions where a transposition is possible. Longer strings
+ * are compared with a banded dynamic program over three rows.
+ * </p>
+ * 
+ * @see <a href="http://dx.doi.org/10.1007/s00236-003-0001-9">H. Hyyr&ouml;,
+ *      A bit-vector algorithm for computing Levenshtein and Damerau edit
+ *      distances</a>
+ */
+final class OsaKernel implements EditDistanceKernel {
+  // keeps the sum of capped entries and a cost from overflowing
+  private static final int UNBOUNDED = Integer.MAX_VALUE/2;
+
+  private final MatchVectors peq;
+
+  private int[] pprev = new int[16];
+  private int[] prev = new int[16];
+  private int[] cur = new int[16];
+  private char[] chars = new char[16];
+  /* +***************************************************************** */
+  OsaKernel(UnitCosts costs) {
+    this.peq = new MatchVectors(costs);
+  }
+  /* +***************************************************************** */
+  @Override
+  public int d(String s1, String s2, int maxDist) {
+    int limit = Math.min(maxDist, UNBOUNDED);
+    int m = s1.length();
+    int n = s2.length();
+    if( Math.abs(m-n)>limit ) {
+      return limit+1;
+    }
+    if( m>n ) {
+      String tmp = s1;
+      s1 = s2;
+      s2 = tmp;
+      m = n;
+      n = s2.length();
+    }
+    if( m==0 ) {
+      return n;
+    }
+    if( m<=64 ) {
+      return bitParallel(s1, m, s2, n, limit);
+    }
+    return rows(s1, m, s2, n, limit);
+  }
+  /* +***************************************************************** */
+  private int bitParallel(String pattern, int m, String text, int n,
+                          int limit)
+  {
+    peq.build(pattern, 0, m);
+    long last = 1L<<(m-1);
+    long vp = -1L;
+    long vn = 0L;
+    long d0 = 0L;
+    long pmOld = 0L;
+    int score = m;
+    for(int j = 0; j<n; j++) {
+      long pm = peq.get(peq.slot(text.charAt(j)), 0);
+      // positions where swapping with the previous character matches
+      long tr = (((~d0)&pm)<<1)&pmOld;
+      d0 = (((pm&vp)+vp)^vp)|pm|vn|tr;
+      long hp = vn|~(d0|vp);
+      long hn = d0&vp;
+      if( (hp&last)!=0 ) {
+        score += 1;
+      } else if( (hn&last)!=0 ) {
+        score -= 1;
+      }
+      hp = (hp<<1)|1L;
+      hn = hn<<1;
+      vp = hn|~(d0|hp);
+      vn = hp&d0;
+      pmOld = pm;
+      if( score-(n-j-1)>limit ) {
+        return limit+1;
+      }
+    }
+    return score>limit ? limit+1 : score;
+  }
+  /* +***************************************************************** */
+  private int rows(String a, int m, String b, int n, int limit) {
+    int tooFar = limit+1;
+    if( prev.length<=n ) {
+      pprev = new int[n+1];
+      prev = new int[n+1];
+      cur = new int[n+1];
+      chars = new char[n+1];
+    }
+    int[] pprev = this.pprev;
+    int[] prev = this.prev;
+    int[] cur = this.cur;
+    char[] bs = this.chars;
+    for(int j = 1; j<=n; j++) {
+      bs[j] = peq.normalize(b.charAt(j-1));
+    }
+    for(int j = 0; j<=n; j++) {
+      prev[j] = Math.min(j, tooFar);
+    }
+
+    boolean prevRowTooFar = false;
+    char before = 0;
+    for(int i = 1; i<=m; i++) {
+      char ca = peq.normalize(a.charAt(i-1));
+      int from = Math.max(1, i-limit);
+      int to = Math.min(n, i+limit);
+      cur[from-1] = from==1 ? Math.min(i, tooFar) : tooFar;
+      int rowMin = cur[from-1];
+      for(int j = from; j<=to; j++) {
+        char cb = bs[j];
+        int dist = prev[j-1]+(ca==cb ? 0 : 1);
+        dist = Math.min(dist, prev[j]+1);
+        dist = Math.min(dist, cur[j-1]+1);
+        if( i>1 && j>1 && ca==bs[j-1] && before==cb ) {
+          dist = Math.min(dist, pprev[j-2]+1);
+        }
+        dist = Math.min(dist, tooFar);
+        cur[j] = dist;
+        if( dist<rowMin ) {
+          rowMin = dist;
+        }
+      }
+      if( to<n ) {
+        cur[to+1] = tooFar;
+      }
+      // a transposition skips one row, but never two
+      boolean rowTooFar = rowMin>=tooFar;
+      if( rowTooFar && prevRowTooFar ) {
+        return tooFar;
+      }
+      prevRowTooFar = rowTooFar;
+      before = ca;
+      int[] tmp = pprev;
+      pprev = prev;
+      prev = cur;
+      cur = tmp;
+    }
+    return prev[n];
+  }
+  /* +***************************************************************** */
+}
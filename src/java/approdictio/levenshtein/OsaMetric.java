@@ -0,0 +1,82 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein;
+
+/**
+ * <p>
+ * implements the <em>optimal string alignment</em> distance, also known as
+ * restricted Damerau-Levenshtein distance. In addition to insertion,
+ * deletion and substitution, swapping two adjacent characters costs 1, so
+ * typing "teh" instead of "the" is a distance of 1. No substring may be
+ * edited more than once, which makes the computation as cheap as the
+ * Levenshtein distance.
+ * </p>
+ * <p>
+ * <b>Note:</b> this distance does not satisfy the triangle inequality. For
+ * example, "ca" and "ac" have distance 1, "ac" and "abc" have distance 1,
+ * but "ca" and "abc" have distance 3. A {@link approdictio.dict.BKTree}
+ * relies on the triangle inequality and may therefore miss results with
+ * this distance. Use {@link DamerauMetric} for a {@code BKTree}.
+ * </p>
+ * <p>
+ * Strings of up to 64 characters are compared with the bit-parallel
+ * algorithm of Hyyr&ouml;, longer ones with a banded dynamic program.
+ * </p>
+ * 
+ * @see <a href="http://en.wikipedia.org/wiki/Damerau%E2%80%93Levenshtein_distance">English
+ *      Wikipedia on the Damerau-Levenshtein distance</a>
+ */
+public class OsaMetric extends KernelMetric {
+  private final UnitCosts costs;
+
+  // +********************************************************************
+  /**
+   * <p>
+   * creates the metric with the costs of {@link CostFunctions#defaultCosts}.
+   * </p>
+   */
+  public OsaMetric() {
+    this(CostFunctions.defaultCosts);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * creates the metric with the given costs, which must be
+   * {@link UnitCosts}, for example {@link CostFunctions#caseIgnore}. The
+   * swap of two adjacent characters also costs 1.
+   * </p>
+   * 
+   * @throws IllegalArgumentException if {@code c} is not a {@code UnitCosts}
+   */
+  public OsaMetric(LevenCosts c) {
+    this.costs = DamerauMetric.unitCosts(c);
+  }
+  // +********************************************************************
+  /**
+   * <p>
+   * returns 2, since a swap changes two characters, for
+   * {@link CostFunctions#defaultCosts} and 0 for all other costs.
+   * </p>
+   */
+  @Override
+  public int editSpan() {
+    return costs==CostFunctions.defaultCosts ? 2 : 0;
+  }
+  // +********************************************************************
+  @Override
+  EditDistanceKernel newKernel() {
+    return new OsaKernel(costs);
+  }
+  // +********************************************************************
+}
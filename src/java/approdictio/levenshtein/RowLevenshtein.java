@@ -0,0 +1,126 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein;
+
+/**
+ * <p>
+ * computes the Levenshtein distance for arbitrary {@link LevenCosts} with
+ * the classic dynamic programming algorithm. Only two rows of the matrix are
+ * kept, and they are reused from call to call. Costs are looked up in
+ * the given {@link LevenCosts} as they are, so costs passed through
+ * {@link CostFunctions#compile} are found in its tables and all others are
+ * called directly.
+ * </p>
+ * <p>
+ * If a {@code maxDist} is given, only the diagonal band of the matrix is
+ * filled that can be reached with at most {@code maxDist} insertions and
+ * deletions. This assumes that inserting or deleting a character costs at
+ * least 1, which is necessary anyway for the costs to define a metric.
+ * </p>
+ */
+final class RowLevenshtein implements EditDistanceKernel {
+  // keeps the sum of capped entries and a cost from overflowing
+  private static final int UNBOUNDED = Integer.MAX_VALUE/2;
+
+  private final LevenCosts costs;
+
+  private int[] prev = new int[16];
+  private int[] cur = new int[16];
+  // insertion costs of the characters of the second string
+  private int[] insert = new int[16];
+  // deletion costs of the characters of the first string, which often is
+  // the same query for many calls
+  private int[] delete = new int[16];
+  private String deleteFor = null;
+  /* +***************************************************************** */
+  RowLevenshtein(LevenCosts costs) {
+    this.costs = costs;
+  }
+  /* +***************************************************************** */
+  @Override
+  public int d(String v1, String v2, int maxDist) {
+    int limit = Math.min(maxDist, UNBOUNDED);
+    int tooFar = limit+1;
+    int m = v1.length();
+    int n = v2.length();
+    if( Math.abs(m-n)>limit ) {
+      return tooFar;
+    }
+    if( prev.length<=n ) {
+      prev = new int[n+1];
+      cur = new int[n+1];
+      insert = new int[n+1];
+    }
+
+    // All entries are capped at tooFar. Entries outside of the band are
+    // never computed and are treated as tooFar.
+    int[] prev = this.prev;
+    int[] cur = this.cur;
+    int[] insert = this.insert;
+    for(int j = 0; j <= n; j++) {
+      prev[j] = Math.min(j, tooFar);
+    }
+    for(int j = 1; j <= n; j++) {
+      insert[j] = costs.insdelCost(v2.charAt(j - 1));
+    }
+    int[] delete = deleteCosts(v1);
+
+    for(int i = 1; i <= m; i++) {
+      char ch1 = v1.charAt(i - 1);
+      int insdel1 = delete[i];
+      int from = Math.max(1, i - limit);
+      int to = Math.min(n, i + limit);
+      cur[from - 1] = from == 1 ? Math.min(i, tooFar) : tooFar;
+      int rowMin = cur[from - 1];
+      for(int j = from; j <= to; j++) {
+        char ch2 = v2.charAt(j - 1);
+        int subst = prev[j - 1] + costs.substCost(ch1, ch2);
+        int del = prev[j] + insdel1;
+        int ins = cur[j - 1] + insert[j];
+        int dist = Math.min(Math.min(Math.min(subst, del), ins), tooFar);
+        cur[j] = dist;
+        if( dist < rowMin ) {
+          rowMin = dist;
+        }
+      }
+      if( to < n ) {
+        cur[to + 1] = tooFar;
+      }
+      // costs are not negative, so no path leaves this row cheaper
+      if( rowMin >= tooFar ) {
+        return tooFar;
+      }
+      int[] tmp = prev;
+      prev = cur;
+      cur = tmp;
+    }
+    return prev[n];
+  }
+  /* +***************************************************************** */
+  private int[] deleteCosts(String v1) {
+    if( v1==deleteFor ) {
+      return delete;
+    }
+    int m = v1.length();
+    if( delete.length<=m ) {
+      delete = new int[m+1];
+    }
+    for(int i = 1; i <= m; i++) {
+      delete[i] = costs.insdelCost(v1.charAt(i - 1));
+    }
+    deleteFor = v1;
+    return delete;
+  }
+  /* +***************************************************************** */
+}
@@ -0,0 +1,52 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein;
+
+/**
+ * <p>
+ * marks {@link LevenCosts} where inserting or deleting a character costs 1
+ * and replacing a character costs 1 unless both characters are equivalent,
+ * in which case the cost is 0. Equivalence is defined by
+ * {@link #normalize normalize()}.
+ * </p>
+ * <p>
+ * The {@link LevenshteinMetric} recognizes unit costs and uses a
+ * bit-parallel algorithm for them, which is considerably faster than
+ * computing the dynamic programming matrix cell by cell.
+ * </p>
+ */
+public interface UnitCosts extends LevenCosts {
+  /**
+   * <p>
+   * maps a character to the representative of its equivalence class. Two
+   * characters can be replaced by each other at zero cost if their
+   * representatives are equal. The identity function gives the plain
+   * Levenshtein distance.
+   * </p>
+   */
+  char normalize(char c);
+
+  @Override
+  default int insdelCost(char c) {
+    return 1;
+  }
+
+  @Override
+  default int substCost(char c1, char c2) {
+    if( c1==c2 || normalize(c1)==normalize(c2) ) {
+      return 0;
+    }
+    return 1;
+  }
+}
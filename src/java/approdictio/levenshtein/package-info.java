@@ -14,7 +14,10 @@
 
 /**
  * <p>Levensthein metric with
- * customizable cost functions.</p>
+ * customizable cost functions, and the Damerau variants
+ * {@link approdictio.levenshtein.OsaMetric} and
+ * {@link approdictio.levenshtein.DamerauMetric} which count the swap of
+ * adjacent characters as a single edit.</p>
  * @see <a href="http://en.wikipedia.org/wiki/Levenshtein_distance">English Wikipedia on the Levenshtein distance</a>
  */
 package approdictio.levenshtein;
\ No newline at end of file
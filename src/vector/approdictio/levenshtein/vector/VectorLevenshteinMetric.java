@@ -0,0 +1,197 @@
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation;
+// version 2.1 of the License.
+
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+package approdictio.levenshtein.vector;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import approdictio.levenshtein.LevenshteinMetric;
+import approdictio.levenshtein.UnitCosts;
+
+/**
+ * <p>
+ * is a {@link LevenshteinMetric} for {@link UnitCosts} which scores one
+ * query against many candidates at once with SIMD instructions. Each lane
+ * of a vector computes the dynamic programming matrix of the query against
+ * a different candidate, so one vector operation advances as many matrix
+ * cells as there are lanes.
+ * </p>
+ * <p>
+ * Only the batch method {@link #d(String,String[],int,int,int[])} is
+ * vectorized. Single distances are computed by the bit-parallel algorithm
+ * of the base class, which is faster for a single pair.
+ * </p>
+ * <p>
+ * This class uses the incubator module {@code jdk.incubator.vector} and is
+ * therefore shipped in a separate jar. Applications using it must run on
+ * Java 17 or later with {@code --add-modules jdk.incubator.vector}. The
+ * rest of the library does not depend on this class.
+ * </p>
+ */
+public class VectorLevenshteinMetric extends LevenshteinMetric {
+  private static final VectorSpecies<Integer> SPECIES =
+      IntVector.SPECIES_PREFERRED;
+
+  private static final int LANES = SPECIES.length();
+
+  private final UnitCosts costs;
+
+  private final ThreadLocal<Workspace> workspace =
+      new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+          return new Workspace();
+        }
+      };
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * creates a metric with the given unit costs, for example
+   * {@link approdictio.levenshtein.CostFunctions#defaultCosts}.
+   * </p>
+   */
+  public VectorLevenshteinMetric(UnitCosts costs) {
+    super(costs);
+    this.costs = costs;
+  }
+  /* +***************************************************************** */
+  /**
+   * <p>
+   * returns the number of candidates scored in parallel on this machine.
+   * </p>
+   */
+  public static int lanes() {
+    return LANES;
+  }
+  /* +***************************************************************** */
+  @Override
+  public void d(String query, String[] candidates, int count, int maxDist,
+                int[] dists)
+  {
+    if( maxDist<0 ) {
+      super.d(query, candidates, count, maxDist, dists);
+      return;
+    }
+    Workspace ws = workspace.get();
+    ws.prepareQuery(query, costs);
+    int full = count-count%LANES;
+    for(int from = 0; from<full; from += LANES) {
+      ws.scoreChunk(candidates, from, LANES, costs, maxDist, dists);
+    }
+    if( full<count ) {
+      ws.scoreChunk(candidates, full, count-full, costs, maxDist, dists);
+    }
+  }
+  /* +***************************************************************** */
+  /**
+   * keeps the scratch arrays of one thread.
+   */
+  private static final class Workspace {
+    private int[] query = new int[32];
+    private int m;
+    // one vector of matrix entries per query position
+    private int[] columns = new int[33*LANES];
+    // the candidates' characters, transposed such that the j-th character
+    // of all candidates forms one vector
+    private int[] chars = new int[32*LANES];
+    private final int[] lengths = new int[LANES];
+    private final int[] result = new int[LANES];
+    /* +*************************************************************** */
+    void prepareQuery(String q, UnitCosts costs) {
+      m = q.length();
+      if( query.length<m ) {
+        query = new int[m];
+        columns = new int[(m+1)*LANES];
+      }
+      for(int i = 0; i<m; i++) {
+        query[i] = costs.normalize(q.charAt(i));
+      }
+    }
+    /* +*************************************************************** */
+    void scoreChunk(String[] candidates, int from, int count,
+                    UnitCosts costs, int maxDist, int[] dists)
+    {
+      int maxLen = transpose(candidates, from, count, costs);
+      int tooFar = maxDist>=Integer.MAX_VALUE-1 ? Integer.MAX_VALUE
+          : maxDist+1;
+
+      for(int i = 0; i<=m; i++) {
+        IntVector.broadcast(SPECIES, i).intoArray(columns, i*LANES);
+      }
+      IntVector one = IntVector.broadcast(SPECIES, 1);
+      IntVector lens = IntVector.fromArray(SPECIES, lengths, 0);
+      // candidates of length zero have distance m
+      IntVector res = IntVector.broadcast(SPECIES, m);
+
+      for(int j = 1; j<=maxLen; j++) {
+        IntVector c = IntVector.fromArray(SPECIES, chars, (j-1)*LANES);
+        IntVector diag = IntVector.fromArray(SPECIES, columns, 0);
+        IntVector left = IntVector.broadcast(SPECIES, j);
+        left.intoArray(columns, 0);
+        IntVector rowMin = left;
+        for(int i = 1; i<=m; i++) {
+          IntVector up = IntVector.fromArray(SPECIES, columns, i*LANES);
+          VectorMask<Integer> differ =
+              c.compare(VectorOperators.NE, query[i-1]);
+          IntVector cell = diag.add(one, differ)
+              .min(up.add(one))
+              .min(left.add(one));
+          cell.intoArray(columns, i*LANES);
+          rowMin = rowMin.min(cell);
+          diag = up;
+          left = cell;
+        }
+        res = res.blend(left, lens.compare(VectorOperators.EQ, j));
+
+        // stop if no unfinished candidate can get back below tooFar
+        VectorMask<Integer> open = lens.compare(VectorOperators.GT, j);
+        if( !rowMin.compare(VectorOperators.LT, tooFar).and(open).anyTrue() ) {
+          res = res.blend(tooFar, open);
+          break;
+        }
+      }
+      res.min(tooFar).intoArray(result, 0);
+      System.arraycopy(result, 0, dists, from, count);
+    }
+    /* +*************************************************************** */
+    private int transpose(String[] candidates, int from, int count,
+                          UnitCosts costs)
+    {
+      int maxLen = 0;
+      for(int l = 0; l<LANES; l++) {
+        int len = l<count ? candidates[from+l].length() : 0;
+        lengths[l] = len;
+        maxLen = Math.max(maxLen, len);
+      }
+      if( chars.length<maxLen*LANES ) {
+        chars = new int[maxLen*LANES];
+      }
+      for(int l = 0; l<LANES; l++) {
+        String s = l<count ? candidates[from+l] : "";
+        int len = s.length();
+        for(int j = 0; j<len; j++) {
+          chars[j*LANES+l] = costs.normalize(s.charAt(j));
+        }
+        // never matches a query character
+        for(int j = len; j<maxLen; j++) {
+          chars[j*LANES+l] = -1;
+        }
+      }
+      return maxLen;
+    }
+  }
+  /* +***************************************************************** */
+}
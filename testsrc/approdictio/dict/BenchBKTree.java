@@ -0,0 +1,96 @@
+package approdictio.dict;
+
+import static approdictio.dict.DictFixtures.randomWord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import approdictio.levenshtein.LevenshteinMetric;
+
+/**
+ * compares lookup throughput of the iterative {@link BKTree} traversal with
+ * the recursive one it replaced. Not a unit test, run it with
+ * {@code java approdictio.dict.BenchBKTree [numWords [numQueries]]}.
+ */
+public class BenchBKTree {
+  private static final int MAX_DIST = 1;
+
+  /*+******************************************************************/
+  // the former recursive lookup, kept for comparison
+  private static int recursive(BKNode<String> node, QueryScorer<String> scorer,
+                               int maxDist,
+                               List<ResultElem<String,Integer>> result)
+  {
+    int bestDist = Integer.MAX_VALUE;
+    int maxChildDist = node.getChildren().maxDist();
+    int d = scorer.d(node.getValue(), maxDist+maxChildDist);
+    if( d<=maxDist ) {
+      result.add(new ResultElem<String,Integer>(node.getValue(), d));
+      bestDist = d;
+    }
+    for(int i = Math.max(d-maxDist, 0); i<=d+maxDist; i++) {
+      BKNode<String> child = node.get(i);
+      if( child!=null ) {
+        bestDist = Math.min(bestDist,
+                            recursive(child, scorer, maxDist, result));
+      }
+    }
+    return bestDist;
+  }
+  /*+******************************************************************/
+  private static int countBest(List<ResultElem<String,Integer>> l,
+                               int bestDist) {
+    int count = 0;
+    for(ResultElem<String,Integer> e : l) {
+      if( e.d==bestDist ) count += 1;
+    }
+    return count;
+  }
+  /*+******************************************************************/
+  public static void main(String[] argv) {
+    int numWords = argv.length>0 ? Integer.parseInt(argv[0]) : 1000000;
+    int numQueries = argv.length>1 ? Integer.parseInt(argv[1]) : 200;
+    Random rand = new Random(19530418L);
+    IntMetric<String> metric = new LevenshteinMetric();
+    BKTree<String> tree = new BKTree<String>(metric);
+
+    long start = System.nanoTime();
+    for(int i=0; i<numWords; i++) {
+      tree.add(randomWord(rand, 5, 10, 26));
+    }
+    System.out.printf("built tree of %d words in %.1fs%n", numWords,
+                      (System.nanoTime()-start)/1e9);
+
+    String[] queries = new String[numQueries];
+    for(int i=0; i<numQueries; i++) {
+      queries[i] = randomWord(rand, 5, 10, 26);
+    }
+
+    for(int round=0; round<3; round++) {
+      start = System.nanoTime();
+      long found = 0;
+      for(String q : queries) {
+        List<ResultElem<String,Integer>> l =
+            new ArrayList<ResultElem<String,Integer>>();
+        int best = recursive(tree.getRoot(), metric.prepare(q), MAX_DIST, l);
+        found += countBest(l, best);
+      }
+      report("recursive", start, numQueries, found);
+
+      start = System.nanoTime();
+      found = 0;
+      for(String q : queries) {
+        found += tree.lookup(q, MAX_DIST).size();
+      }
+      report("iterative", start, numQueries, found);
+    }
+  }
+  /*+******************************************************************/
+  private static void report(String what, long start, int numQueries,
+                             long found) {
+    double secs = (System.nanoTime()-start)/1e9;
+    System.out.printf("%-10s %8.0f lookups/s (%d results)%n",
+                      what, numQueries/secs, found);
+  }
+}
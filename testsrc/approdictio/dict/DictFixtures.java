@@ -0,0 +1,92 @@
+package approdictio.dict;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>
+ * provides the words and result conversions shared by the dictionary
+ * tests.
+ * </p>
+ */
+final class DictFixtures {
+  private DictFixtures() {}
+  /*+******************************************************************/
+  /** returns a word of 2 to 9 of the letters a to f */
+  static String randomWord(Random rand) {
+    return randomWord(rand, 2, 8, 6);
+  }
+  /*+******************************************************************/
+  /**
+   * returns a word of {@code minLen} to {@code minLen+range-1} of the
+   * first {@code letters} letters of the alphabet
+   */
+  static String randomWord(Random rand, int minLen, int range,
+                           int letters) {
+    int l = minLen+rand.nextInt(range);
+    StringBuilder sb = new StringBuilder(l);
+    for(int i=0; i<l; i++) {
+      sb.append((char)('a'+rand.nextInt(letters)));
+    }
+    return sb.toString();
+  }
+  /*+******************************************************************/
+  /** returns distinct words for distinct {@code i} of the given radix */
+  static String word(int i, int radix) {
+    return Integer.toString(i*7919, radix);
+  }
+  /*+******************************************************************/
+  static File tmpFile(String prefix) throws Exception {
+    File f = File.createTempFile(prefix, ".bin");
+    f.deleteOnExit();
+    return f;
+  }
+  /*+******************************************************************/
+  /**
+   * returns what a lookup of {@code q} finds by comparing it with all
+   * {@code words}, formatted like {@link #sorted}
+   */
+  static List<String> scan(List<String> words,
+                           IntMetric<String> metric,
+                           String q, int maxDist, boolean distinct) {
+    int best = Integer.MAX_VALUE;
+    List<String> result = new ArrayList<String>();
+    for(String w : words) {
+      if( distinct && w.equals(q) ) {
+        continue;
+      }
+      int d = metric.d(q, w);
+      if( d>maxDist || d>best ) {
+        continue;
+      }
+      if( d<best ) {
+        best = d;
+        result.clear();
+      }
+      result.add(w+":"+d);
+    }
+    Collections.sort(result);
+    return result;
+  }
+  /*+******************************************************************/
+  static List<Integer> dists(List<ResultElem<String,Integer>> l) {
+    List<Integer> result = new ArrayList<Integer>();
+    for(ResultElem<String,Integer> re : l) {
+      result.add(re.d);
+    }
+    return result;
+  }
+  /*+******************************************************************/
+  static List<String> sorted(List<ResultElem<String,Integer>> l) {
+    List<String> result = new ArrayList<String>();
+    for(ResultElem<String,Integer> re : l) {
+      result.add(re.value+":"+re.d);
+    }
+    Collections.sort(result);
+    return result;
+  }
+  /*+******************************************************************/
+}
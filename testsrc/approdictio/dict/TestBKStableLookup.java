@@ -122,6 +122,33 @@ public class TestBKStableLookup {
     assertFalse(bkosl.hasNext());
   }
   @Test
+  public void testBudget() {
+    int N = 10000;
+    WeightedString[] wwords = genZeroToN(N, new Random(18790314L));
+    for(int i=0; i<N; i++) {
+      tree.add(wwords[i]);
+    }
+    BKStableLookup<WeightedString> bkosl =
+        new BKStableLookup<WeightedString>(tree, wwords[N/2], 4,
+                                           weightCompare);
+    LookupBudget budget = LookupBudget.ofWork(20);
+    bkosl.setBudget(budget);
+    int count = 0;
+    while (bkosl.hasNext()) {
+      count += 1;
+      bkosl.next();
+    }
+    assertTrue(budget.isExhausted());
+    assertEquals(20, budget.spent());
+    assertTrue("count<=20", count<=20);
+    try {
+      bkosl.setBudget(LookupBudget.ofWork(20));
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+  @Test
   public void testRandomVariationWeight() {
     long birthOfWernerHeisenberg = 19011205L;
     Random rand = new Random(birthOfWernerHeisenberg);
@@ -150,6 +177,7 @@ public class TestBKStableLookup {
       for(int k=0; k<hardResults.size(); k++) {
         assertEquals(hardResults.get(k), bkosl.next());
       }
+      assertFalse(bkosl.hasNext());
     }
   }
 
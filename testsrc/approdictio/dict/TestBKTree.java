@@ -0,0 +1,302 @@
+package approdictio.dict;
+
+import static org.junit.Assert.*;
+import static approdictio.dict.DictFixtures.randomWord;
+import static approdictio.dict.DictFixtures.sorted;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import approdictio.levenshtein.LevenshteinMetric;
+
+public class TestBKTree {
+  // every value has distance 1 to every other, so the tree is one long
+  // chain of nodes
+  private static final IntMetric<Integer> discrete = new IntMetric<Integer>() {
+    @Override
+    public int d(Integer v1, Integer v2) {
+      return v1.equals(v2) ? 0 : 1;
+    }
+  };
+  /*+******************************************************************/
+  @Test
+  public void degeneratedTree() throws Exception {
+    BKTree<Integer> tree = new BKTree<Integer>(discrete);
+    int N = 20000;
+    for(int i=0; i<N; i++) {
+      tree.add(i);
+    }
+    List<ResultElem<Integer,Integer>> l = tree.lookup(N-1, 0);
+    assertEquals(1, l.size());
+    assertEquals(Integer.valueOf(N-1), l.get(0).value);
+
+    l = tree.lookupDistinct(N-1, 1);
+    assertEquals(N-1, l.size());
+
+  }
+  /*+******************************************************************/
+  @Test
+  public void dumpDeepTree() throws Exception {
+    BKTree<Integer> tree = new BKTree<Integer>(discrete);
+    for(int i=0; i<3000; i++) {
+      tree.add(i);
+    }
+    StringBuilder sb = new StringBuilder();
+    tree.dump(sb);
+    String nl = String.format("%n");
+    assertTrue(sb.toString().startsWith("-1: 0"+nl+"  1: 1"+nl+"    1: 2"+nl));
+  }
+  /*+******************************************************************/
+  @Test
+  public void bulkBuildsSameTree() throws Exception {
+    Random rand = new Random(18890420L);
+    List<String> words = new ArrayList<String>();
+    for(int i=0; i<30000; i++) {
+      words.add(randomWord(rand));
+    }
+    LevenshteinMetric lev = new LevenshteinMetric();
+    BKTree<String> tree = new BKTree<String>(lev);
+    for(String w : words) {
+      tree.add(w);
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    BKTree<String> bulk = new BKTree<String>(lev);
+    // also into a tree that is not empty
+    for(String w : words.subList(0, 10)) {
+      bulk.add(w);
+    }
+    bulk.addAll(words.subList(10, words.size()), pool);
+    assertEquals(dump(tree), dump(bulk));
+
+    List<Integer> ints = new ArrayList<Integer>();
+    for(int i=0; i<3000; i++) {
+      ints.add(i%2000);
+    }
+    BKTree<Integer> chain = new BKTree<Integer>(discrete);
+    for(Integer i : ints) {
+      chain.add(i);
+    }
+    BKTree<Integer> bulkChain = new BKTree<Integer>(discrete);
+    bulkChain.addAll(ints, pool);
+    assertEquals(dump(chain), dump(bulkChain));
+    pool.shutdown();
+  }
+  /*+******************************************************************/
+  private static String dump(BKTree<?> tree) {
+    StringBuilder sb = new StringBuilder();
+    tree.dump(sb);
+    return sb.toString();
+  }
+  /*+******************************************************************/
+  @Test
+  public void budgetLimitsWork() throws Exception {
+    Random rand = new Random(18580423L);
+    BKTree<String> tree = new BKTree<String>(new LevenshteinMetric());
+    for(int i=0; i<5000; i++) {
+      tree.add(randomWord(rand));
+    }
+    FrozenBKTree<String> frozen = tree.freeze();
+    for(int i=0; i<50; i++) {
+      String q = randomWord(rand);
+      LookupBudget unlimited = new LookupBudget(Long.MAX_VALUE,
+                                                Long.MAX_VALUE);
+      assertEquals(sorted(tree.lookup(q, 2)),
+                   sorted(tree.lookup(q, 2, unlimited)));
+      assertFalse(unlimited.isExhausted());
+      LookupBudget second = LookupBudget.ofNanos(1000000000L);
+      assertEquals(sorted(frozen.lookup(q, 2)),
+                   sorted(frozen.lookup(q, 2, second)));
+
+      // a close match found early may end the lookup within the budget
+      LookupBudget small = LookupBudget.ofWork(10);
+      tree.lookup(q, 2, small);
+      assertEquals(Math.min(10, unlimited.spent()), small.spent());
+      assertEquals(unlimited.spent()>10, small.isExhausted());
+      unlimited = new LookupBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+      frozen.lookupDistinct(q, 2, unlimited);
+      small = LookupBudget.ofWork(10);
+      frozen.lookupDistinct(q, 2, small);
+      assertEquals(Math.min(10, unlimited.spent()), small.spent());
+    }
+    LookupBudget expired = LookupBudget.ofNanos(0);
+    assertEquals(0, tree.lookup("abc", 3, expired).size());
+    assertTrue(expired.isExhausted());
+  }
+  /*+******************************************************************/
+  @Test
+  public void frozenFindsSame() throws Exception {
+    Random rand = new Random(18790314L);
+    BKTree<String> tree = new BKTree<String>(new LevenshteinMetric());
+    for(int i=0; i<5000; i++) {
+      tree.add(randomWord(rand));
+    }
+    FrozenBKTree<String> frozen = tree.freeze();
+    for(int i=0; i<300; i++) {
+      String q = randomWord(rand);
+      for(int maxDist=0; maxDist<4; maxDist++) {
+        assertEquals(sorted(tree.lookup(q, maxDist)),
+                     sorted(frozen.lookup(q, maxDist)));
+        assertEquals(sorted(tree.lookupDistinct(q, maxDist)),
+                     sorted(frozen.lookupDistinct(q, maxDist)));
+        // same children order, so even equal distances are chosen alike
+        assertEquals(sorted(tree.nearest(q, 4*maxDist)),
+                     sorted(frozen.nearest(q, 4*maxDist)));
+      }
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void frozenDegenerated() throws Exception {
+    BKTree<Integer> tree = new BKTree<Integer>(discrete);
+    assertEquals(0, tree.freeze().lookup(1, 1).size());
+    int N = 20000;
+    for(int i=0; i<N; i++) {
+      tree.add(i);
+    }
+    FrozenBKTree<Integer> frozen = tree.freeze();
+    assertEquals(N, frozen.size());
+    assertEquals(N-1, frozen.lookupDistinct(7, 1).size());
+  }
+  /*+******************************************************************/
+  @Test(expected=UnsupportedOperationException.class)
+  public void frozenAdd() throws Exception {
+    new BKTree<Integer>(discrete).freeze().add(1);
+  }
+  /*+******************************************************************/
+  @Test
+  public void sparseLinks() throws Exception {
+    BKTree.SparseLinkTable<Integer> links =
+        new BKTree.SparseLinkTable<Integer>();
+    BKNode<Integer> n12 = new BKNode<Integer>(12);
+    BKNode<Integer> n3 = new BKNode<Integer>(3);
+    assertNull(links.set(12, n12));
+    assertNull(links.set(3, n3));
+    assertSame(n12, links.get(12));
+    assertNull(links.get(5));
+    assertEquals(2, links.size());
+    assertEquals(3, links.distAt(0));
+    assertEquals(1, links.slotOf(4));
+    assertEquals(2, links.slotOf(13));
+    assertEquals(12, links.maxDist());
+    assertFalse(links.denserAsArray());
+
+    BKTree.ArrayLinkTable<Integer> dense =
+        new BKTree.ArrayLinkTable<Integer>(links);
+    assertSame(n3, dense.get(3));
+    assertSame(n12, dense.get(12));
+  }
+  /*+******************************************************************/
+  @Test
+  public void lookupMatchesScan() throws Exception {
+    Random rand = new Random(19550418L);
+    IntMetric<String> metric = new LevenshteinMetric();
+    BKTree<String> tree = new BKTree<String>(metric);
+    List<String> words = new ArrayList<String>();
+    for(int i=0; i<3000; i++) {
+      String w = randomWord(rand);
+      tree.add(w);
+      if( !words.contains(w) ) {
+        words.add(w);
+      }
+    }
+    for(int i=0; i<200; i++) {
+      String q = randomWord(rand);
+      int maxDist = i%4;
+      int best = Integer.MAX_VALUE;
+      for(String w : words) {
+        best = Math.min(best, metric.d(q, w));
+      }
+      List<ResultElem<String,Integer>> expected =
+          new ArrayList<ResultElem<String,Integer>>();
+      for(String w : words) {
+        int d = metric.d(q, w);
+        if( d==best && d<=maxDist ) {
+          expected.add(new ResultElem<String,Integer>(w, d));
+        }
+      }
+      assertEquals(sorted(expected), sorted(tree.lookup(q, maxDist)));
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void sinkSeesAllWithinRadius() throws Exception {
+    Random rand = new Random(19690720L);
+    LevenshteinMetric metric = new LevenshteinMetric();
+    BKTree<String> tree = new BKTree<String>(metric);
+    PartitionedBKTree partitioned = new PartitionedBKTree(metric);
+    ConcurrentBKTree<String> concurrent =
+        new ConcurrentBKTree<String>(metric);
+    List<String> words = new ArrayList<String>();
+    for(int i=0; i<3000; i++) {
+      String w = randomWord(rand);
+      tree.add(w);
+      partitioned.add(w);
+      concurrent.add(w);
+      if( !words.contains(w) ) {
+        words.add(w);
+      }
+    }
+    FrozenBKTree<String> frozen = tree.freeze();
+    for(int i=0; i<100; i++) {
+      String q = randomWord(rand);
+      int maxDist = i%4;
+      List<ResultElem<String,Integer>> expected =
+          new ArrayList<ResultElem<String,Integer>>();
+      for(String w : words) {
+        int d = metric.d(q, w);
+        if( d<=maxDist ) {
+          expected.add(new ResultElem<String,Integer>(w, d));
+        }
+      }
+      Collector all = new Collector();
+      tree.lookup(q, maxDist, all);
+      assertEquals(sorted(expected), sorted(all.found));
+      all = new Collector();
+      frozen.lookup(q, maxDist, all);
+      assertEquals(sorted(expected), sorted(all.found));
+      all = new Collector();
+      partitioned.lookup(q, maxDist, all);
+      assertEquals(sorted(expected), sorted(all.found));
+      all = new Collector();
+      concurrent.lookup(q, maxDist, all);
+      assertEquals(sorted(expected), sorted(all.found));
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void partitionedFindsSame() throws Exception {
+    Random rand = new Random(19550418L);
+    LevenshteinMetric metric = new LevenshteinMetric();
+    BKTree<String> tree = new BKTree<String>(metric);
+    PartitionedBKTree partitioned = new PartitionedBKTree(metric);
+    for(int i=0; i<3000; i++) {
+      String w = randomWord(rand);
+      tree.add(w);
+      partitioned.add(w);
+    }
+    for(int i=0; i<300; i++) {
+      String q = randomWord(rand);
+      int maxDist = i%5;
+      assertEquals(sorted(tree.lookup(q, maxDist)),
+                   sorted(partitioned.lookup(q, maxDist)));
+      assertEquals(sorted(tree.lookupDistinct(q, maxDist)),
+                   sorted(partitioned.lookupDistinct(q, maxDist)));
+    }
+  }
+  /*+******************************************************************/
+  // collects everything, never lowering the lookup's limit
+  private static final class Collector implements ResultSink<String> {
+    private final List<ResultElem<String,Integer>> found =
+        new ArrayList<ResultElem<String,Integer>>();
+    @Override
+    public int found(String value, int d) {
+      found.add(new ResultElem<String,Integer>(value, d));
+      return Integer.MAX_VALUE;
+    }
+  }
+  /*+******************************************************************/
+}
@@ -0,0 +1,65 @@
+package approdictio.dict;
+
+import static org.junit.Assert.*;
+import static approdictio.dict.DictFixtures.sorted;
+import static approdictio.dict.DictFixtures.word;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import approdictio.levenshtein.LevenshteinMetric;
+
+public class TestConcurrentBKTree {
+  private final LevenshteinMetric metric = new LevenshteinMetric();
+  /*+******************************************************************/
+  @Test
+  public void concurrentAdds() throws Exception {
+    final ConcurrentBKTree<String> tree =
+        new ConcurrentBKTree<String>(metric);
+    final AtomicReference<String> failure = new AtomicReference<String>();
+    final int N = 5000;
+    Thread[] writers = new Thread[8];
+    for(int t=0; t<writers.length; t++) {
+      final int offset = t;
+      writers[t] = new Thread() {
+        @Override
+        public void run() {
+          // all writers add the same words in different orders
+          for(int i=0; i<N; i++) {
+            String w = word((i*(2*offset+1))%N, 7);
+            tree.add(w);
+            // a word added by this thread must be visible at once
+            List<ResultElem<String,Integer>> l = tree.lookup(w, 0);
+            if( l.size()!=1 || !l.get(0).value.equals(w) ) {
+              failure.set(w+" -> "+l);
+            }
+          }
+        }
+      };
+      writers[t].start();
+    }
+    for(Thread t : writers) {
+      t.join();
+    }
+    assertNull(failure.get());
+
+    BKTree<String> reference = new BKTree<String>(metric);
+    for(int i=0; i<N; i++) {
+      reference.add(word(i, 7));
+      assertEquals(1, tree.lookup(word(i, 7), 0).size());
+    }
+    Random rand = new Random(18790314L);
+    for(int i=0; i<300; i++) {
+      String q = word(rand.nextInt(2*N), 7);
+      int maxDist = i%4;
+      assertEquals(sorted(reference.lookup(q, maxDist)),
+                   sorted(tree.lookup(q, maxDist)));
+      assertEquals(sorted(reference.lookupDistinct(q, maxDist)),
+                   sorted(tree.lookupDistinct(q, maxDist)));
+    }
+  }
+  /*+******************************************************************/
+}
@@ -0,0 +1,85 @@
+package approdictio.dict;
+
+import static org.junit.Assert.*;
+import static approdictio.dict.DictFixtures.dists;
+import static approdictio.dict.DictFixtures.randomWord;
+import static approdictio.dict.DictFixtures.sorted;
+import static approdictio.dict.DictFixtures.word;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import approdictio.levenshtein.LevenshteinMetric;
+
+public class TestConcurrentNgramDict {
+  private final LevenshteinMetric metric = new LevenshteinMetric();
+  /*+******************************************************************/
+  @Test
+  public void findsSame() throws Exception {
+    for(boolean exact : new boolean[]{false, true}) {
+      Random rand = new Random(18790314L);
+      NgramDict dict = new NgramDict(3, metric, exact);
+      ConcurrentNgramDict cdict = new ConcurrentNgramDict(3, metric, exact);
+      for(int i=0; i<3000; i++) {
+        String w = randomWord(rand);
+        dict.add(w);
+        cdict.add(w);
+      }
+      assertEquals(dict.getTermCount(), cdict.size());
+      for(int i=0; i<300; i++) {
+        String q = randomWord(rand);
+        int maxDist = i%4;
+        assertEquals(sorted(dict.lookup(q, maxDist)),
+                     sorted(cdict.lookup(q, maxDist)));
+        assertEquals(sorted(dict.lookupDistinct(q, maxDist)),
+                     sorted(cdict.lookupDistinct(q, maxDist)));
+        assertEquals(dists(dict.nearest(q, 3*maxDist)),
+                     dists(cdict.nearest(q, 3*maxDist)));
+      }
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void lookupWhileAdding() throws Exception {
+    final ConcurrentNgramDict dict = new ConcurrentNgramDict(3, metric);
+    final int N = 20000;
+    // words are added in order, readers look up words already added
+    final AtomicInteger added = new AtomicInteger(0);
+    final AtomicReference<String> failure = new AtomicReference<String>();
+    Thread[] readers = new Thread[4];
+    for(int t=0; t<readers.length; t++) {
+      readers[t] = new Thread() {
+        @Override
+        public void run() {
+          Random rand = new Random(getId());
+          while( added.get()<N && failure.get()==null ) {
+            int n = added.get();
+            if( n==0 ) {
+              continue;
+            }
+            String w = "w"+word(rand.nextInt(n), 36)+"z";
+            List<ResultElem<String,Integer>> l = dict.lookup(w, 1);
+            if( l.size()!=1 || !l.get(0).value.equals(w) ) {
+              failure.set(w+" -> "+l);
+            }
+          }
+        }
+      };
+      readers[t].start();
+    }
+    for(int i=0; i<N; i++) {
+      dict.add("w"+word(i, 36)+"z");
+      added.set(i+1);
+    }
+    for(Thread t : readers) {
+      t.join();
+    }
+    assertNull(failure.get());
+    assertEquals(N, dict.size());
+  }
+  /*+******************************************************************/
+}
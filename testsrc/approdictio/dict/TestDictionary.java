@@ -1,6 +1,7 @@
 package approdictio.dict;
 
 import static org.junit.Assert.*;
+import static approdictio.dict.DictFixtures.dists;
 
 import java.util.*;
 
@@ -20,11 +21,16 @@ public class TestDictionary {
     LevenshteinMetric lev = new LevenshteinMetric();
 
     @SuppressWarnings("unchecked")
-    Dictionary<String,Integer>[] ds = new Dictionary[2];
+    Dictionary<String,Integer>[] ds = new Dictionary[6];
 
     dicts = ds;
     dicts[0] =  new BKTree<String>(lev);
     dicts[1] = new NgramDict(3, lev);
+    // n-grams too long to be packed into a key are hashed
+    dicts[2] = new NgramDict(5, lev);
+    dicts[3] = new PartitionedBKTree(lev);
+    dicts[4] = new NgramDict(3, lev, true);
+    dicts[5] = new ConcurrentBKTree<String>(lev);
     
     random = new Random(1);
   }
@@ -137,9 +143,80 @@ public class TestDictionary {
   }
   /*+******************************************************************/
   @Test
+  public void nearest() throws Exception {
+    LevenshteinMetric lev = new LevenshteinMetric();
+    List<String> words = new ArrayList<String>();
+    for(int i=0; i<2000; i++) {
+      words.add(randomWord(1, 9));
+    }
+    for(Dictionary<String,Integer> d : dicts) {
+      String name = d.getClass().getName();
+      for(String w : words) {
+        d.add(w);
+      }
+      // only NgramDict without exact recall may miss terms
+      boolean exact = !(d instanceof NgramDict) || d==dicts[4];
+      for(int i=0; i<100; i++) {
+        String q = randomWord(1, 9);
+        int k = i%12;
+        List<ResultElem<String,Integer>> l = d.nearest(q, k);
+        assertTrue(name, l.size()<=k);
+        Set<String> seen = new HashSet<String>();
+        for(int j=0; j<l.size(); j++) {
+          ResultElem<String,Integer> re = l.get(j);
+          assertEquals(name, lev.d(q, re.value), re.d.intValue());
+          assertTrue(name, seen.add(re.value));
+          if( j>0 ) {
+            assertTrue(name, l.get(j-1).d<=re.d);
+          }
+        }
+        if( exact ) {
+          assertEquals(name, nearestDists(words, lev, q, k), dists(l));
+        }
+      }
+      assertEquals(0, d.nearest("abc", 0).size());
+      // ranks everything without allocating for k values up front
+      if( exact ) {
+        assertEquals(name, nearestDists(words, lev, "abc", Integer.MAX_VALUE),
+                     dists(d.nearest("abc", Integer.MAX_VALUE)));
+      }
+    }
+  }
+  /*+******************************************************************/
+  @Test(expected=UnsupportedOperationException.class)
+  public void nearestNotImplemented() {
+    // a dictionary written before nearest() still compiles
+    Dictionary<String,Integer> d = new Dictionary<String,Integer>() {
+      public void add(String value) {
+      }
+      public List<ResultElem<String,Integer>> lookup(String q, Integer l) {
+        return new ArrayList<ResultElem<String,Integer>>();
+      }
+      public List<ResultElem<String,Integer>>
+      lookupDistinct(String q, Integer l) {
+        return new ArrayList<ResultElem<String,Integer>>();
+      }
+    };
+    d.nearest("abc", 1);
+  }
+  /*+******************************************************************/
+  private static List<Integer> nearestDists(List<String> words,
+                                            LevenshteinMetric lev,
+                                            String q, int k) {
+    List<Integer> all = new ArrayList<Integer>();
+    for(String w : new HashSet<String>(words)) {
+      all.add(lev.d(q, w));
+    }
+    Collections.sort(all);
+    return all.subList(0, Math.min(k, all.size()));
+  }
+  /*+******************************************************************/
+  @Test
   public void lookupOnEmptyDict() throws Exception {
     for(Dictionary<String,Integer> dict : dicts) {
       dict.lookup("abc",2);
+      assertEquals(0, dict.nearest("abc", 3).size());
+      assertEquals(0, dict.nearest("abc", Integer.MAX_VALUE).size());
     }
   }
   /*+******************************************************************/
@@ -121,5 +121,32 @@ public class TestDidyoumean {
     }
   }
   /*+******************************************************************/
+  @Test
+  public void frozen() throws Exception {
+    String fileContent = "abcdef:10\n" + "abXdef:10\n" + "abYdef:11\n";
+    for(Didyoumean dym: dyms) {
+      dym.addFile(new StringReader(fileContent), ':');
+      Didyoumean frozen = dym.freeze();
+      dym.add("abZdef", 12);
+      String name = frozen.getDictClass().getName();
+
+      List<ResultElem<String,Integer>> l = frozen.lookup("ab.def", 1);
+      assertEquals(name, 1, l.size());
+      assertEquals(name, "abYdef", l.get(0).value);
+      assertEquals(name, Integer.valueOf(11), l.get(0).d);
+      assertEquals(name, "abZdef", dym.lookup("ab.def", 1).get(0).value);
+      // freezing a frozen copy keeps its dictionary
+      assertSame(name, l.get(0).value,
+                 frozen.freeze().lookup("ab.def", 1).get(0).value);
+
+      try {
+        frozen.add("abcdef", 1);
+        fail(name);
+      } catch( UnsupportedOperationException e ) {
+        // expected
+      }
+    }
+  }
+  /*+******************************************************************/
 
 }
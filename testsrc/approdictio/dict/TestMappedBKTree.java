@@ -0,0 +1,102 @@
+package approdictio.dict;
+
+import static org.junit.Assert.*;
+import static approdictio.dict.DictFixtures.dists;
+import static approdictio.dict.DictFixtures.randomWord;
+import static approdictio.dict.DictFixtures.sorted;
+import static approdictio.dict.DictFixtures.tmpFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.Test;
+
+import approdictio.levenshtein.LevenshteinMetric;
+
+public class TestMappedBKTree {
+  private final IntMetric<String> metric = new LevenshteinMetric();
+  /*+******************************************************************/
+  @Test
+  public void roundTrip() throws Exception {
+    Random rand = new Random(18790314L);
+    BKTree<String> tree = new BKTree<String>(metric);
+    for(int i=0; i<3000; i++) {
+      tree.add(randomWord(rand));
+    }
+    String nonAscii = "\u00e4\u00f6\u00fc\u20ac";
+    tree.add(nonAscii);
+    File f = tmpFile("bktree");
+    MappedBKTree.write(tree, f);
+    MappedBKTree mapped = MappedBKTree.load(f, metric);
+    assertEquals(tree.freeze().size(), mapped.size());
+    assertEquals(nonAscii, mapped.lookup(nonAscii, 0).get(0).value);
+    for(int i=0; i<300; i++) {
+      String q = randomWord(rand);
+      int maxDist = i%4;
+      assertEquals(sorted(tree.lookup(q, maxDist)),
+                   sorted(mapped.lookup(q, maxDist)));
+      assertEquals(sorted(tree.lookupDistinct(q, maxDist)),
+                   sorted(mapped.lookupDistinct(q, maxDist)));
+      assertEquals(dists(tree.nearest(q, 3*maxDist)),
+                   dists(mapped.nearest(q, 3*maxDist)));
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void emptyTree() throws Exception {
+    File f = tmpFile("bktree");
+    MappedBKTree.write(new BKTree<String>(metric), f);
+    MappedBKTree mapped = MappedBKTree.load(f, metric);
+    assertEquals(0, mapped.size());
+    assertEquals(0, mapped.lookup("abc", 5).size());
+  }
+  /*+******************************************************************/
+  @Test
+  public void badFile() throws Exception {
+    File f = tmpFile("bktree");
+    OutputStream out = new FileOutputStream(f);
+    out.write("this is not a tree".getBytes("UTF-8"));
+    out.close();
+    FileFormatException ex = null;
+    try {
+      MappedBKTree.load(f, metric);
+    } catch( FileFormatException e ) {
+      ex = e;
+    }
+    assertNotNull(ex);
+    assertEquals(f.getPath(), ex.getFilename());
+  }
+  /*+******************************************************************/
+  @Test
+  public void corruptTables() throws Exception {
+    Random rand = new Random(18790315L);
+    BKTree<String> tree = new BKTree<String>(metric);
+    for(int i=0; i<100; i++) {
+      tree.add(randomWord(rand));
+    }
+    int n = tree.freeze().size();
+    // a child index beyond the nodes, a cycle to the root and a value
+    // start beyond the character table
+    int[] offsets = {16+4*1, 16+4*5, 16+4*(2*n+1)+4*3};
+    int[] values = {1000000, 0, 1000000};
+    for(int i=0; i<offsets.length; i++) {
+      File f = tmpFile("bktree");
+      MappedBKTree.write(tree, f);
+      RandomAccessFile raf = new RandomAccessFile(f, "rw");
+      raf.seek(offsets[i]);
+      raf.writeInt(values[i]);
+      raf.close();
+      FileFormatException ex = null;
+      try {
+        MappedBKTree.load(f, metric);
+      } catch( FileFormatException e ) {
+        ex = e;
+      }
+      assertNotNull("offset "+offsets[i], ex);
+    }
+  }
+  /*+******************************************************************/
+}
@@ -0,0 +1,156 @@
+package approdictio.dict;
+
+import static org.junit.Assert.*;
+import static approdictio.dict.DictFixtures.dists;
+import static approdictio.dict.DictFixtures.randomWord;
+import static approdictio.dict.DictFixtures.scan;
+import static approdictio.dict.DictFixtures.sorted;
+import static approdictio.dict.DictFixtures.tmpFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import approdictio.levenshtein.CostFunctions;
+import approdictio.levenshtein.LevenshteinMetric;
+
+public class TestMappedNgramDict {
+  private final IntMetric<String> metric = new LevenshteinMetric();
+  /*+******************************************************************/
+  @Test
+  public void roundTrip() throws Exception {
+    Random rand = new Random(18790314L);
+    NgramDict dict = new NgramDict(3, metric);
+    for(int i=0; i<3000; i++) {
+      dict.add(randomWord(rand, 3, 9, 10));
+    }
+    String nonAscii = "\u00e4\u00f6\u00fc\u20ac";
+    dict.add(nonAscii);
+    File f = tmpFile("ngrams");
+    MappedNgramDict.write(dict, f);
+    MappedNgramDict mapped = MappedNgramDict.load(f, metric);
+    assertEquals(nonAscii, mapped.lookup(nonAscii, 0).get(0).value);
+    for(int i=0; i<300; i++) {
+      String q = randomWord(rand, 3, 9, 10);
+      int maxDist = i%4;
+      assertEquals(sorted(dict.lookup(q, maxDist)),
+                   sorted(mapped.lookup(q, maxDist)));
+      assertEquals(sorted(dict.lookupDistinct(q, maxDist)),
+                   sorted(mapped.lookupDistinct(q, maxDist)));
+      assertEquals(dists(dict.nearest(q, 3*maxDist)),
+                   dists(mapped.nearest(q, 3*maxDist)));
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void exactRecallRoundTrip() throws Exception {
+    Random rand = new Random(18790315L);
+    NgramDict dict = new NgramDict(3, metric, true);
+    List<String> words = new ArrayList<String>();
+    for(int i=0; i<2000; i++) {
+      String w = randomWord(rand, 1, 10, 6);
+      dict.add(w);
+      if( !words.contains(w) ) {
+        words.add(w);
+      }
+    }
+    File f = tmpFile("ngrams");
+    MappedNgramDict.write(dict, f);
+    MappedNgramDict mapped = MappedNgramDict.load(f, metric);
+    for(int i=0; i<300; i++) {
+      String q = randomWord(rand, 1, 10, 6);
+      int maxDist = i%5;
+      assertEquals(scan(words, metric, q, maxDist, false),
+                   sorted(mapped.lookup(q, maxDist)));
+      assertEquals(scan(words, metric, q, maxDist, true),
+                   sorted(mapped.lookupDistinct(q, maxDist)));
+      List<Integer> all = new ArrayList<Integer>();
+      for(String w : words) {
+        all.add(metric.d(q, w));
+      }
+      Collections.sort(all);
+      int k = 3*maxDist;
+      assertEquals(all.subList(0, k), dists(mapped.nearest(q, k)));
+    }
+  }
+  /*+******************************************************************/
+  @Test(expected=IllegalArgumentException.class)
+  public void exactRecallNeedsEditCount() throws Exception {
+    File f = tmpFile("ngrams");
+    MappedNgramDict.write(new NgramDict(3, metric, true), f);
+    MappedNgramDict.load(f, new LevenshteinMetric(CostFunctions.caseIgnore));
+  }
+  /*+******************************************************************/
+  @Test
+  public void emptyDict() throws Exception {
+    File f = tmpFile("ngrams");
+    MappedNgramDict.write(new NgramDict(2, metric), f);
+    MappedNgramDict mapped = MappedNgramDict.load(f, metric);
+    assertEquals(0, mapped.size());
+    assertEquals(0, mapped.lookup("abc", 5).size());
+  }
+  /*+******************************************************************/
+  @Test
+  public void badFile() throws Exception {
+    File f = tmpFile("ngrams");
+    OutputStream out = new FileOutputStream(f);
+    out.write("this is not an index".getBytes("UTF-8"));
+    out.close();
+    FileFormatException ex = null;
+    try {
+      MappedNgramDict.load(f, metric);
+    } catch( FileFormatException e ) {
+      ex = e;
+    }
+    assertNotNull(ex);
+    assertEquals(f.getPath(), ex.getFilename());
+  }
+  /*+******************************************************************/
+  @Test
+  public void corruptTables() throws Exception {
+    Random rand = new Random(18790316L);
+    NgramDict dict = new NgramDict(3, metric);
+    for(int i=0; i<100; i++) {
+      dict.add(randomWord(rand, 3, 9, 10));
+    }
+    File f = tmpFile("ngrams");
+    MappedNgramDict.write(dict, f);
+    RandomAccessFile raf = new RandomAccessFile(f, "r");
+    raf.seek(12);
+    int t = raf.readInt();
+    int g = raf.readInt();
+    long size = raf.length();
+    raf.close();
+    int termStart = 32+8*g;
+    int postingStart = termStart+4*(t+1)+4*t;
+    // a term start beyond the characters, a posting list start beyond the
+    // postings and a posting cut off in the middle of a number
+    long[] offsets = {termStart+4*2, postingStart+4*1, size-1};
+    for(long offset : offsets) {
+      MappedNgramDict.write(dict, f);
+      raf = new RandomAccessFile(f, "rw");
+      raf.seek(offset);
+      if( offset==size-1 ) {
+        raf.write(0x80);
+      } else {
+        raf.writeInt(1000000);
+      }
+      raf.close();
+      FileFormatException ex = null;
+      try {
+        MappedNgramDict.load(f, metric);
+      } catch( FileFormatException e ) {
+        ex = e;
+      }
+      assertNotNull("offset "+offset, ex);
+    }
+  }
+  /*+******************************************************************/
+}
@@ -0,0 +1,229 @@
+package approdictio.dict;
+
+import static org.junit.Assert.*;
+import static approdictio.dict.DictFixtures.randomWord;
+import static approdictio.dict.DictFixtures.scan;
+import static approdictio.dict.DictFixtures.sorted;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import approdictio.levenshtein.CostFunctions;
+import approdictio.levenshtein.DamerauMetric;
+import approdictio.levenshtein.LevenshteinMetric;
+import approdictio.levenshtein.OsaMetric;
+
+public class TestNgramDict {
+  /*+******************************************************************/
+  @Test
+  public void exactRecallLevenshtein() throws Exception {
+    for(int n=1; n<=5; n++) {
+      compareWithScan(n, new LevenshteinMetric());
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void exactRecallSwaps() throws Exception {
+    compareWithScan(3, new DamerauMetric());
+    compareWithScan(2, new OsaMetric());
+  }
+  /*+******************************************************************/
+  @Test(expected=IllegalArgumentException.class)
+  public void exactRecallNeedsEditCount() throws Exception {
+    new NgramDict(3, new LevenshteinMetric(CostFunctions.caseIgnore), true);
+  }
+  /*+******************************************************************/
+  @Test
+  public void frozenFindsSame() throws Exception {
+    for(boolean exact : new boolean[] {false, true}) {
+      Random rand = new Random(18840215L);
+      NgramDict dict = new NgramDict(3, new LevenshteinMetric(), exact);
+      for(int i=0; i<2000; i++) {
+        dict.add(randomWord(rand, 1, 10, 6));
+      }
+      FrozenNgramDict frozen = dict.freeze();
+      assertEquals(dict.getTermCount(), frozen.size());
+      dict.add("abcdefabcdef");
+      for(int i=0; i<300; i++) {
+        String q = randomWord(rand, 1, 10, 6);
+        int maxDist = i%5;
+        assertEquals(sorted(dict.lookup(q, maxDist)),
+                     sorted(frozen.lookup(q, maxDist)));
+        assertEquals(sorted(dict.lookupDistinct(q, maxDist)),
+                     sorted(frozen.lookupDistinct(q, maxDist)));
+        assertEquals(sorted(dict.nearest(q, 3*maxDist)),
+                     sorted(frozen.nearest(q, 3*maxDist)));
+      }
+      assertEquals(0, frozen.lookup("abcdefabcdef", 0).size());
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void bulkFindsSame() throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    for(boolean exact : new boolean[] {false, true}) {
+      Random rand = new Random(18950101L);
+      List<String> words = new ArrayList<String>();
+      for(int i=0; i<30000; i++) {
+        words.add(randomWord(rand, 1, 10, 6));
+      }
+      NgramDict dict = new NgramDict(3, new LevenshteinMetric(), exact);
+      for(String w : words) {
+        dict.add(w);
+      }
+      NgramDict bulk = new NgramDict(3, new LevenshteinMetric(), exact);
+      // also into a dictionary that is not empty
+      for(String w : words.subList(0, 10)) {
+        bulk.add(w);
+      }
+      bulk.addAll(words.subList(10, words.size()), pool);
+      assertEquals(dict.getTermCount(), bulk.getTermCount());
+      for(int i=0; i<300; i++) {
+        String q = randomWord(rand, 1, 10, 6);
+        int maxDist = i%5;
+        assertEquals(sorted(dict.lookup(q, maxDist)),
+                     sorted(bulk.lookup(q, maxDist)));
+        assertEquals(sorted(dict.lookupDistinct(q, maxDist)),
+                     sorted(bulk.lookupDistinct(q, maxDist)));
+      }
+    }
+    pool.shutdown();
+  }
+  /*+******************************************************************/
+  @Test
+  public void budgetLimitsWork() throws Exception {
+    Random rand = new Random(18580423L);
+    NgramDict dict = new NgramDict(2, new LevenshteinMetric(), true);
+    for(int i=0; i<5000; i++) {
+      dict.add(randomWord(rand, 1, 10, 6));
+    }
+    for(int i=0; i<50; i++) {
+      String q = randomWord(rand, 1, 10, 6);
+      LookupBudget unlimited = LookupBudget.ofWork(Long.MAX_VALUE);
+      assertEquals(sorted(dict.lookup(q, 2)),
+                   sorted(dict.lookup(q, 2, unlimited)));
+      assertFalse(unlimited.isExhausted());
+
+      LookupBudget small = LookupBudget.ofWork(3);
+      dict.freeze().lookupDistinct(q, 2, small);
+      assertTrue(small.spent()<=3);
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void sinkSeesAllWithinRadius() throws Exception {
+    Random rand = new Random(19690720L);
+    IntMetric<String> metric = new LevenshteinMetric();
+    NgramDict dict = new NgramDict(3, metric, true);
+    List<String> words = new ArrayList<String>();
+    for(int i=0; i<2000; i++) {
+      String w = randomWord(rand, 1, 10, 6);
+      dict.add(w);
+      if( !words.contains(w) ) {
+        words.add(w);
+      }
+    }
+    FrozenNgramDict frozen = dict.freeze();
+    for(int i=0; i<100; i++) {
+      String q = randomWord(rand, 1, 10, 6);
+      int maxDist = i%4;
+      List<String> expected = new ArrayList<String>();
+      for(String w : words) {
+        int d = metric.d(q, w);
+        if( d<=maxDist && !w.equals(q) ) {
+          expected.add(w+":"+d);
+        }
+      }
+      Collections.sort(expected);
+      final List<ResultElem<String,Integer>> found =
+          new ArrayList<ResultElem<String,Integer>>();
+      ResultSink<String> all = new ResultSink<String>() {
+        @Override
+        public int found(String value, int d) {
+          found.add(new ResultElem<String,Integer>(value, d));
+          return Integer.MAX_VALUE;
+        }
+      };
+      dict.lookupDistinct(q, maxDist, all);
+      assertEquals(expected, sorted(found));
+      found.clear();
+      frozen.lookupDistinct(q, maxDist, all);
+      assertEquals(expected, sorted(found));
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void sinkMayLookUpAgain() throws Exception {
+    Random rand = new Random(19690721L);
+    final NgramDict dict = new NgramDict(3, new LevenshteinMetric());
+    final ConcurrentNgramDict conc =
+        new ConcurrentNgramDict(3, new LevenshteinMetric());
+    for(int i=0; i<2000; i++) {
+      String w = randomWord(rand, 1, 10, 6);
+      dict.add(w);
+      conc.add(w);
+    }
+    final List<ResultElem<String,Integer>> found =
+        new ArrayList<ResultElem<String,Integer>>();
+    ResultSink<String> all = new ResultSink<String>() {
+      @Override
+      public int found(String value, int d) {
+        found.add(new ResultElem<String,Integer>(value, d));
+        return Integer.MAX_VALUE;
+      }
+    };
+    ResultSink<String> nested = new ResultSink<String>() {
+      @Override
+      public int found(String value, int d) {
+        found.add(new ResultElem<String,Integer>(value, d));
+        dict.lookup(value+"ab", 2);
+        conc.lookup(value+"ab", 2);
+        return Integer.MAX_VALUE;
+      }
+    };
+    for(int i=0; i<100; i++) {
+      String q = randomWord(rand, 1, 10, 6);
+      dict.lookup(q, 2, all);
+      List<String> expected = sorted(found);
+      found.clear();
+      dict.lookup(q, 2, nested);
+      assertEquals(expected, sorted(found));
+      found.clear();
+      conc.lookup(q, 2, nested);
+      assertEquals(expected, sorted(found));
+      found.clear();
+    }
+  }
+  /*+******************************************************************/
+  @Test(expected=UnsupportedOperationException.class)
+  public void frozenAdd() throws Exception {
+    new NgramDict(3, new LevenshteinMetric()).freeze().add("a");
+  }
+  /*+******************************************************************/
+  private static void compareWithScan(int n, IntMetric<String> metric) {
+    Random rand = new Random(18671107L+n);
+    NgramDict dict = new NgramDict(n, metric, true);
+    List<String> words = new ArrayList<String>();
+    for(int i=0; i<2000; i++) {
+      String w = randomWord(rand, 1, 10, 6);
+      dict.add(w);
+      if( !words.contains(w) ) {
+        words.add(w);
+      }
+    }
+    for(int i=0; i<300; i++) {
+      String q = randomWord(rand, 1, 10, 6);
+      int maxDist = i%5;
+      assertEquals(scan(words, metric, q, maxDist, false),
+                   sorted(dict.lookup(q, maxDist)));
+      assertEquals(scan(words, metric, q, maxDist, true),
+                   sorted(dict.lookupDistinct(q, maxDist)));
+    }
+  }
+  /*+******************************************************************/
+}
@@ -0,0 +1,160 @@
+package approdictio.levenshtein;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import approdictio.dict.BKTree;
+import approdictio.dict.IntMetric;
+import approdictio.dict.QueryScorer;
+import approdictio.dict.ResultElem;
+
+public class TestDamerau {
+  /*+******************************************************************/
+  // textbook full matrix implementation of the optimal string alignment
+  private static int osa(String a, String b) {
+    int m = a.length();
+    int n = b.length();
+    int[][] d = new int[m+1][n+1];
+    for(int i=0; i<=m; i++) d[i][0] = i;
+    for(int j=0; j<=n; j++) d[0][j] = j;
+    for(int i=1; i<=m; i++) {
+      for(int j=1; j<=n; j++) {
+        int cost = a.charAt(i-1)==b.charAt(j-1) ? 0 : 1;
+        d[i][j] = Math.min(Math.min(d[i-1][j]+1, d[i][j-1]+1),
+                           d[i-1][j-1]+cost);
+        if( i>1 && j>1 && a.charAt(i-1)==b.charAt(j-2)
+            && a.charAt(i-2)==b.charAt(j-1) ) {
+          d[i][j] = Math.min(d[i][j], d[i-2][j-2]+1);
+        }
+      }
+    }
+    return d[m][n];
+  }
+  /*+******************************************************************/
+  // textbook implementation of Lowrance and Wagner
+  private static int damerau(String a, String b) {
+    int m = a.length();
+    int n = b.length();
+    int inf = m+n;
+    int[][] h = new int[m+2][n+2];
+    java.util.Map<Character,Integer> da =
+        new java.util.HashMap<Character,Integer>();
+    h[0][0] = inf;
+    for(int i=0; i<=m; i++) { h[i+1][0] = inf; h[i+1][1] = i; }
+    for(int j=0; j<=n; j++) { h[0][j+1] = inf; h[1][j+1] = j; }
+    for(int i=1; i<=m; i++) {
+      int db = 0;
+      for(int j=1; j<=n; j++) {
+        Integer kk = da.get(b.charAt(j-1));
+        int k = kk==null ? 0 : kk;
+        int l = db;
+        int cost = 1;
+        if( a.charAt(i-1)==b.charAt(j-1) ) {
+          cost = 0;
+          db = j;
+        }
+        h[i+1][j+1] = Math.min(Math.min(h[i][j]+cost, h[i+1][j]+1),
+                               Math.min(h[i][j+1]+1,
+                                        h[k][l]+(i-k-1)+1+(j-l-1)));
+      }
+      da.put(a.charAt(i-1), i);
+    }
+    return h[m+1][n+1];
+  }
+  /*+******************************************************************/
+  private static String randomString(Random rand, int maxLen, String chars) {
+    int len = rand.nextInt(maxLen+1);
+    StringBuilder sb = new StringBuilder(len);
+    for(int i=0; i<len; i++) {
+      sb.append(chars.charAt(rand.nextInt(chars.length())));
+    }
+    return sb.toString();
+  }
+  /*+******************************************************************/
+  @Test
+  public void transpositions() {
+    IntMetric<String> osa = new OsaMetric();
+    IntMetric<String> dl = new DamerauMetric();
+    assertEquals(1, osa.d("teh", "the"));
+    assertEquals(1, dl.d("teh", "the"));
+    assertEquals(2, new LevenshteinMetric().d("teh", "the"));
+
+    // the classic example where the two differ
+    assertEquals(3, osa.d("ca", "abc"));
+    assertEquals(2, dl.d("ca", "abc"));
+
+    assertEquals(0, osa.d("", ""));
+    assertEquals(3, dl.d("", "abc"));
+    assertEquals(1, new OsaMetric(CostFunctions.caseIgnore).d("Teh", "thE"));
+  }
+  /*+******************************************************************/
+  @Test
+  public void equalsTextbook() {
+    Random rand = new Random(19470101L);
+    IntMetric<String> osa = new OsaMetric();
+    IntMetric<String> dl = new DamerauMetric();
+    for(int maxLen : new int[] {6, 60, 90}) {
+      for(int i=0; i<300; i++) {
+        String a = randomString(rand, maxLen, "abcd");
+        String b = randomString(rand, maxLen, "abcd");
+        String msg = a+" -- "+b;
+        int expOsa = osa(a, b);
+        int expDl = damerau(a, b);
+        assertEquals(msg, expOsa, osa.d(a, b));
+        assertEquals(msg, expDl, dl.d(a, b));
+        QueryScorer<String> osaScorer = osa.prepare(a);
+        QueryScorer<String> dlScorer = dl.prepare(a);
+        for(int maxDist=0; maxDist<5; maxDist++) {
+          assertEquals(msg, Math.min(expOsa, maxDist+1), osa.d(a, b, maxDist));
+          assertEquals(msg, Math.min(expDl, maxDist+1), dl.d(a, b, maxDist));
+          assertEquals(msg, Math.min(expOsa, maxDist+1),
+                       osaScorer.d(b, maxDist));
+          assertEquals(msg, Math.min(expDl, maxDist+1),
+                       dlScorer.d(b, maxDist));
+        }
+      }
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void longStringsWithinBand() {
+    Random rand = new Random(19470102L);
+    StringBuilder sb = new StringBuilder();
+    for(int i=0; i<50000; i++) {
+      sb.append("abcd".charAt(rand.nextInt(4)));
+    }
+    String a = sb.toString();
+    // swap two characters in the middle and append one
+    char[] cs = a.toCharArray();
+    char tmp = cs[25000];
+    cs[25000] = cs[25001];
+    cs[25001] = tmp;
+    String b = new String(cs)+"x";
+    int exp = cs[25000]==cs[25001] ? 1 : 2;
+    IntMetric<String> dl = new DamerauMetric();
+    assertEquals(exp, dl.d(a, b, 3));
+    assertEquals(exp, dl.prepare(a).d(b, 3));
+    assertEquals(1, dl.d(a, b, 0));
+  }
+  /*+******************************************************************/
+  @Test(expected=IllegalArgumentException.class)
+  public void weightedCostsRejected() {
+    new DamerauMetric(CostFunctions.compile(CostFunctions.defaultCosts));
+  }
+  /*+******************************************************************/
+  @Test
+  public void bkTreeFindsTransposition() {
+    BKTree<String> tree = new BKTree<String>(new DamerauMetric());
+    for(String s : new String[] {"the", "then", "than", "tea", "ten"}) {
+      tree.add(s);
+    }
+    List<ResultElem<String,Integer>> l = tree.lookup("hte", 1);
+    assertEquals(1, l.size());
+    assertEquals("the", l.get(0).value);
+  }
+  /*+******************************************************************/
+}
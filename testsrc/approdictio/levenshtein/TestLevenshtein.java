@@ -2,9 +2,12 @@ package approdictio.levenshtein;
 
 import static org.junit.Assert.*;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 import approdictio.dict.IntMetric;
+import approdictio.dict.QueryScorer;
 import approdictio.levenshtein.CostFunctions;
 import approdictio.levenshtein.LevenshteinMetric;
 
@@ -63,4 +66,182 @@ public class TestLevenshtein {
     
   }
   /*+******************************************************************/
+  // same costs as the predefined ones, but not recognized as unit costs,
+  // such that the full matrix is computed
+  private static final LevenCosts matrixDefault = new LevenCosts() {
+    public int insdelCost(char c) {
+      return CostFunctions.defaultCosts.insdelCost(c);
+    }
+    public int substCost(char c1, char c2) {
+      return CostFunctions.defaultCosts.substCost(c1, c2);
+    }
+  };
+  private static final LevenCosts matrixCaseIgnore = new LevenCosts() {
+    public int insdelCost(char c) {
+      return CostFunctions.caseIgnore.insdelCost(c);
+    }
+    public int substCost(char c1, char c2) {
+      return CostFunctions.caseIgnore.substCost(c1, c2);
+    }
+  };
+  /*+******************************************************************/
+  private static String randomString(Random rand, int maxLen, String chars) {
+    int len = rand.nextInt(maxLen+1);
+    StringBuilder sb = new StringBuilder(len);
+    for(int i=0; i<len; i++) {
+      sb.append(chars.charAt(rand.nextInt(chars.length())));
+    }
+    return sb.toString();
+  }
+  /*+******************************************************************/
+  @Test
+  public void bitParallelEqualsMatrix() {
+    Random rand = new Random(17071969L);
+    IntMetric<String> fast = new LevenshteinMetric();
+    IntMetric<String> slow = new LevenshteinMetric(matrixDefault);
+    IntMetric<String> fastCase =
+        new LevenshteinMetric(CostFunctions.caseIgnore);
+    IntMetric<String> slowCase = new LevenshteinMetric(matrixCaseIgnore);
+    int[] maxLens = {5, 20, 63, 64, 65, 130, 200};
+    for(int maxLen : maxLens) {
+      for(int i=0; i<300; i++) {
+        String s1 = randomString(rand, maxLen, "abcAB\u00e4\u20ac");
+        String s2 = randomString(rand, maxLen, "abcAB\u00e4\u20ac");
+        String msg = s1+" -- "+s2;
+        assertEquals(msg, slow.d(s1, s2), fast.d(s1, s2));
+        assertEquals(msg, slowCase.d(s1, s2), fastCase.d(s1, s2));
+      }
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void boundedEqualsCapped() {
+    Random rand = new Random(19690717L);
+    IntMetric<String>[] all = allRoutes();
+    int[] maxLens = {4, 12, 70};
+    for(int maxLen : maxLens) {
+      for(int i=0; i<300; i++) {
+        String s1 = randomString(rand, maxLen, "abcAB");
+        String s2 = rand.nextBoolean()
+            ? randomString(rand, maxLen, "abcAB") : mutate(rand, s1, 3);
+        for(IntMetric<String> m : all) {
+          int exact = m.d(s1, s2);
+          for(int maxDist=0; maxDist<6; maxDist++) {
+            String msg = s1+" -- "+s2+" maxDist="+maxDist;
+            assertEquals(msg, Math.min(exact, maxDist+1),
+                         m.d(s1, s2, maxDist));
+          }
+        }
+      }
+    }
+  }
+  /*+******************************************************************/
+  // vowels are cheap to replace by each other, digits expensive to drop
+  private static final LevenCosts weighted = new LevenCosts() {
+    public int insdelCost(char c) {
+      return Character.isDigit(c) ? 3 : 2;
+    }
+    public int substCost(char c1, char c2) {
+      if( c1==c2 ) return 0;
+      if( "aeiou\u00e4".indexOf(c1)>=0 && "aeiou\u00e4".indexOf(c2)>=0 ) {
+        return 1;
+      }
+      return 2;
+    }
+  };
+  /*+******************************************************************/
+  @Test
+  public void compiledEqualsPlain() {
+    Random rand = new Random(4711L);
+    IntMetric<String> plain = new LevenshteinMetric(weighted);
+    IntMetric<String> compiled =
+        new LevenshteinMetric(CostFunctions.compile(weighted));
+    IntMetric<String> tiny =
+        new LevenshteinMetric(CostFunctions.compile(weighted, 100));
+    for(int i=0; i<500; i++) {
+      String s1 = randomString(rand, 15, "ab1e\u00e4\u20ac");
+      String s2 = randomString(rand, 15, "ab1e\u00e4\u20ac");
+      String msg = s1+" -- "+s2;
+      int exact = plain.d(s1, s2);
+      assertEquals(msg, exact, compiled.d(s1, s2));
+      assertEquals(msg, exact, tiny.d(s1, s2));
+      assertEquals(msg, Math.min(exact, 5), compiled.d(s1, s2, 4));
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void customUnitCosts() {
+    // digits are all equivalent
+    IntMetric<String> m = new LevenshteinMetric(new UnitCosts() {
+      public char normalize(char c) {
+        return Character.isDigit(c) ? '0' : c;
+      }
+    });
+    assertEquals(0, m.d("a12b", "a99b"));
+    assertEquals(1, m.d("a12b", "a9xb"));
+    assertEquals(2, m.d("a12b", "ab"));
+  }
+  /*+******************************************************************/
+  @Test(expected=IllegalArgumentException.class)
+  public void hugeCostTable() {
+    CostFunctions.compile(weighted, 65536);
+  }
+  /*+******************************************************************/
+  @Test
+  public void preparedEqualsMetric() {
+    Random rand = new Random(1234L);
+    for(IntMetric<String> m : allRoutes()) {
+      for(int maxLen : new int[] {10, 100}) {
+        String query = randomString(rand, maxLen, "abcAB");
+        QueryScorer<String> scorer = m.prepare(query);
+        String[] candidates = new String[20];
+        for(int i=0; i<candidates.length; i++) {
+          candidates[i] = rand.nextBoolean()
+              ? randomString(rand, maxLen, "abcAB") : mutate(rand, query, 3);
+          String msg = query+" -- "+candidates[i];
+          int exact = m.d(query, candidates[i]);
+          assertEquals(msg, exact, scorer.d(candidates[i]));
+          for(int maxDist=0; maxDist<5; maxDist++) {
+            assertEquals(msg, Math.min(exact, maxDist+1),
+                         scorer.d(candidates[i], maxDist));
+          }
+        }
+        int[] dists = new int[candidates.length];
+        scorer.d(candidates, candidates.length, 3, dists);
+        for(int i=0; i<candidates.length; i++) {
+          assertEquals(m.d(query, candidates[i], 3), dists[i]);
+        }
+      }
+    }
+  }
+  /*+******************************************************************/
+  @SuppressWarnings("unchecked")
+  private static IntMetric<String>[] allRoutes() {
+    return new IntMetric[] {
+        new LevenshteinMetric(),
+        new LevenshteinMetric(CostFunctions.caseIgnore),
+        new LevenshteinMetric(matrixDefault),
+        new LevenshteinMetric(matrixCaseIgnore),
+    };
+  }
+  /*+******************************************************************/
+  private static String mutate(Random rand, String s, int maxEdits) {
+    StringBuilder sb = new StringBuilder(s);
+    int edits = rand.nextInt(maxEdits+1);
+    for(int i=0; i<edits; i++) {
+      int pos = rand.nextInt(sb.length()+1);
+      switch( rand.nextInt(3) ) {
+      case 0:
+        sb.insert(pos, 'x');
+        break;
+      case 1:
+        if( pos<sb.length() ) sb.deleteCharAt(pos);
+        break;
+      default:
+        if( pos<sb.length() ) sb.setCharAt(pos, 'y');
+      }
+    }
+    return sb.toString();
+  }
+  /*+******************************************************************/
 }
@@ -0,0 +1,64 @@
+package approdictio.levenshtein.vector;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import approdictio.levenshtein.CostFunctions;
+import approdictio.levenshtein.LevenshteinMetric;
+import approdictio.levenshtein.UnitCosts;
+
+public class TestVectorLevenshtein {
+  private static String randomString(Random rand, int maxLen, String chars) {
+    int len = rand.nextInt(maxLen+1);
+    StringBuilder sb = new StringBuilder(len);
+    for(int i=0; i<len; i++) {
+      sb.append(chars.charAt(rand.nextInt(chars.length())));
+    }
+    return sb.toString();
+  }
+  /*+******************************************************************/
+  private static void check(UnitCosts costs, Random rand, int maxDist) {
+    LevenshteinMetric scalar = new LevenshteinMetric(costs);
+    LevenshteinMetric vector = new VectorLevenshteinMetric(costs);
+    // not a multiple of the number of lanes
+    int count = 3*VectorLevenshteinMetric.lanes()+1;
+    String[] candidates = new String[count];
+    int[] expected = new int[count];
+    int[] dists = new int[count];
+    for(int round=0; round<50; round++) {
+      String query = randomString(rand, 12, "abcAB");
+      for(int i=0; i<count; i++) {
+        candidates[i] = randomString(rand, 12, "abcAB");
+      }
+      scalar.d(query, candidates, count, maxDist, expected);
+      vector.d(query, candidates, count, maxDist, dists);
+      for(int i=0; i<count; i++) {
+        assertEquals(query+" -- "+candidates[i], expected[i], dists[i]);
+      }
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void equalsScalar() {
+    Random rand = new Random(2718L);
+    for(int maxDist : new int[] {0, 1, 2, 5, Integer.MAX_VALUE}) {
+      check((UnitCosts)CostFunctions.defaultCosts, rand, maxDist);
+      check((UnitCosts)CostFunctions.caseIgnore, rand, maxDist);
+    }
+  }
+  /*+******************************************************************/
+  @Test
+  public void emptyStrings() {
+    LevenshteinMetric m =
+        new VectorLevenshteinMetric((UnitCosts)CostFunctions.defaultCosts);
+    int[] dists = new int[3];
+    m.d("", new String[] {"", "ab", "abc"}, 3, Integer.MAX_VALUE, dists);
+    assertArrayEquals(new int[] {0, 2, 3}, dists);
+    m.d("abcd", new String[] {"", "ab", "abcd"}, 3, Integer.MAX_VALUE, dists);
+    assertArrayEquals(new int[] {4, 2, 0}, dists);
+  }
+  /*+******************************************************************/
+}